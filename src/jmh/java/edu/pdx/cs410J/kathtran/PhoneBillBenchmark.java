@@ -0,0 +1,135 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks sorting and pretty printing {@link PhoneBill}s of various sizes.
+ * Sorting is timed a batch at a time, since each phone bill can only be
+ * sorted once: its score is the time taken to sort {@link
+ * UnsortedPhoneBills#BATCH_SIZE} phone bills.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhoneBillBenchmark {
+
+    @Param({"100", "10000", "100000", "1000000"})
+    public int size;
+
+    private PhoneBill phoneBill;
+
+    /**
+     * Phone bills whose calls are out of order, enough for one batch of sorts.
+     * They are made before each iteration, so that adding their calls is not
+     * timed along with sorting them.
+     */
+    @State(Scope.Thread)
+    public static class UnsortedPhoneBills {
+        static final int BATCH_SIZE = 5;
+
+        @Param({"100", "10000", "100000", "1000000"})
+        public int size;
+
+        private List<PhoneCall> calls;
+        private final PhoneBill[] phoneBills = new PhoneBill[BATCH_SIZE];
+        private int next;
+
+        @Setup
+        public void setUp() {
+            this.calls = PhoneCalls.create(this.size, new Random(this.size));
+        }
+
+        @Setup(Level.Iteration)
+        public void fill() {
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                this.phoneBills[i] = new PhoneBill("Benchmark");
+                this.phoneBills[i].addPhoneCalls(this.calls);
+            }
+            this.next = 0;
+        }
+
+        /**
+         * @return the next phone bill of the batch, which is then let go
+         */
+        PhoneBill next() {
+            PhoneBill phoneBill = this.phoneBills[this.next];
+            this.phoneBills[this.next++] = null;
+            return phoneBill;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        this.phoneBill = PhoneCalls.createPhoneBill("Benchmark", this.size);
+        this.phoneBill.sortPhoneCalls();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(batchSize = UnsortedPhoneBills.BATCH_SIZE)
+    @Measurement(batchSize = UnsortedPhoneBills.BATCH_SIZE)
+    public PhoneBill sortPhoneCalls(UnsortedPhoneBills unsorted) {
+        PhoneBill phoneBill = unsorted.next();
+        phoneBill.sortPhoneCalls();
+        return phoneBill;
+    }
+
+    @Benchmark
+    public String prettyPrint() {
+        return this.phoneBill.prettyPrint();
+    }
+
+    @Benchmark
+    public Writer prettyPrintToWriter() throws IOException {
+        Writer out = new DiscardingWriter();
+        this.phoneBill.prettyPrint(out);
+        return out;
+    }
+
+    /**
+     * A writer that throws away everything written to it.
+     */
+    static class DiscardingWriter extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public Writer append(CharSequence text) {
+            return this;
+        }
+
+        @Override
+        public Writer append(char c) {
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
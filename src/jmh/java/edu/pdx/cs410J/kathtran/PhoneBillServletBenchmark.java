@@ -0,0 +1,69 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the servlet's search for a customer's phone calls between two
+ * times, over phone bills of various sizes. Each search matches about one
+ * day's worth of calls.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhoneBillServletBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int size;
+
+    private PhoneBillServlet servlet;
+    private HttpServletRequest search;
+    private HttpServletResponse response;
+
+    @Setup
+    public void setUp() throws ServletException, IOException {
+        this.servlet = new PhoneBillServlet();
+        HttpServletResponse discard = PhoneBillServletTest.response(new StringWriter());
+        for (PhoneCall phoneCall : PhoneCalls.create(this.size, new Random(this.size)))
+            this.servlet.doPost(PhoneBillServletTest.request("customer", "Benchmark",
+                    "phoneCall", phoneCall.toString()), discard);
+        PhoneBill phoneBill = this.servlet.getPhoneBill("Benchmark");
+        if (phoneBill == null || phoneBill.getPhoneCallCount() != this.size)
+            throw new IllegalStateException("Only " + (phoneBill == null ? 0 : phoneBill.getPhoneCallCount())
+                    + " of " + this.size + " phone calls were posted");
+        this.search = PhoneBillServletTest.request("customer", "Benchmark",
+                "startTime", "06/05/2015 12:00 AM", "endTime", "06/05/2015 11:59 PM");
+        PrintWriter pw = new PrintWriter(new PhoneBillBenchmark.DiscardingWriter());
+        this.response = (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getWriter"))
+                        return pw;
+                    return null;
+                });
+    }
+
+    @Benchmark
+    public HttpServletResponse searchBetweenTimes() throws ServletException, IOException {
+        this.servlet.doGet(this.search, this.response);
+        return this.response;
+    }
+}
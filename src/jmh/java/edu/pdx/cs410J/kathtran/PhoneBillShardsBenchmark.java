@@ -0,0 +1,98 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the throughput of adding phone calls to, and reading the phone
+ * bills of, many customers partitioned across various numbers of
+ * {@link PhoneBillShards}, from various numbers of threads. One shard
+ * stands for a single store shared by every request.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhoneBillShardsBenchmark {
+
+    private static final int CUSTOMERS = 10000;
+
+    @Param({"1", "4", "16", "64"})
+    public int shards;
+
+    private PhoneBillShards phoneBills;
+    private String[] customers;
+    private PhoneCall[] phoneCalls;
+
+    @Setup
+    public void setUp() {
+        this.customers = new String[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; ++i)
+            this.customers[i] = "Customer " + i;
+        List<PhoneCall> calls = PhoneCalls.create(1024, new Random(0));
+        this.phoneCalls = calls.toArray(new PhoneCall[calls.size()]);
+    }
+
+    /**
+     * Starts each iteration with no phone bills, so that they do not grow without bound.
+     */
+    @Setup(Level.Iteration)
+    public void emptyPhoneBills() {
+        this.phoneBills = new PhoneBillShards(this.shards);
+    }
+
+    /**
+     * Adds a phone call to a random customer's phone bill, or, one time in
+     * four, reads a random customer's phone call count.
+     */
+    private int addOrRead() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String customer = this.customers[random.nextInt(CUSTOMERS)];
+        if (random.nextInt(4) == 0) {
+            PhoneBill phoneBill = this.phoneBills.get(customer);
+            return phoneBill == null ? 0 : phoneBill.getPhoneCallCount();
+        }
+        this.phoneBills.computeIfAbsent(customer, PhoneBill::new)
+                .addPhoneCall(this.phoneCalls[random.nextInt(this.phoneCalls.length)]);
+        return 1;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int threads1() {
+        return addOrRead();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public int threads2() {
+        return addOrRead();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int threads4() {
+        return addOrRead();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int threads8() {
+        return addOrRead();
+    }
+}
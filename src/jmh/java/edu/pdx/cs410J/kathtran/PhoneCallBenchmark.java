@@ -0,0 +1,47 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing and comparing single {@link PhoneCall}s.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PhoneCallBenchmark {
+
+    private String description;
+    private PhoneCall phoneCall;
+    private PhoneCall laterPhoneCall;
+
+    @Setup
+    public void setUp() {
+        List<PhoneCall> calls = PhoneCalls.create(2, new Random(0));
+        this.phoneCall = calls.get(0);
+        this.laterPhoneCall = calls.get(1);
+        this.description = this.phoneCall.toString();
+    }
+
+    @Benchmark
+    public PhoneCall parse() {
+        return new PhoneCall(this.description);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return this.phoneCall.compareTo(this.laterPhoneCall);
+    }
+}
@@ -0,0 +1,55 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks the {@link PhoneCallParser} against the regular expressions and
+ * date formats that phone numbers and times were once checked and parsed with.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PhoneCallParserBenchmark {
+
+    private String phoneNumber = "503-555-0123";
+    private String dateTime = "06/05/2015 10:30 PM";
+
+    @Benchmark
+    public long parsePhoneNumber() {
+        return PhoneCallParser.parsePhoneNumber(this.phoneNumber);
+    }
+
+    @Benchmark
+    public boolean matchPhoneNumber() {
+        return Pattern.compile("\\d{3}-\\d{3}-\\d{4}").matcher(this.phoneNumber).matches();
+    }
+
+    @Benchmark
+    public long parseDateTime() {
+        return PhoneCallParser.parseDateTime(this.dateTime);
+    }
+
+    @Benchmark
+    public long simpleDateFormat() throws ParseException {
+        return new SimpleDateFormat("MM/dd/yy hh:mm a").parse(this.dateTime).getTime() / 60000;
+    }
+
+    @Benchmark
+    public long parsePhoneCall() {
+        return PhoneCall.parse("Phone call from 503-555-0123 to 971-555-0199 from 6/5/15 10:30 PM to 6/5/15 11:02 PM")
+                .getEndMinutes();
+    }
+}
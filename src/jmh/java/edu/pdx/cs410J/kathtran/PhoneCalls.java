@@ -0,0 +1,52 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates the synthetic phone calls used by the benchmarks.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneCalls {
+
+    /**
+     * Creates some number of phone calls, in random order, spread over a single year.
+     * Each call lasts from 1 to 120 minutes.
+     *
+     * @param count  the number of calls
+     * @param random source of the call details
+     * @return the phone calls
+     */
+    static List<PhoneCall> create(int count, Random random) {
+        List<PhoneCall> calls = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String caller = String.format("503-%03d-%04d", random.nextInt(1000), random.nextInt(10000));
+            String callee = String.format("971-%03d-%04d", random.nextInt(1000), random.nextInt(10000));
+            int month = 1 + random.nextInt(12);
+            int day = 1 + random.nextInt(28);
+            int hour = 1 + random.nextInt(12);
+            int minute = random.nextInt(60);
+            String marker = random.nextBoolean() ? "AM" : "PM";
+            long start = PhoneCall.getEpochMinutes(
+                    String.format("%02d/%02d/2015 %02d:%02d %s", month, day, hour, minute, marker));
+            calls.add(new PhoneCall(caller, callee, start, start + 1 + random.nextInt(120)));
+        }
+        return calls;
+    }
+
+    /**
+     * Creates a phone bill holding some number of phone calls.
+     *
+     * @param customer some name
+     * @param count    the number of calls
+     * @return the phone bill
+     */
+    static PhoneBill createPhoneBill(String customer, int count) {
+        PhoneBill phoneBill = new PhoneBill(customer);
+        phoneBill.addPhoneCalls(create(count, new Random(count)));
+        return phoneBill;
+    }
+}
@@ -0,0 +1,83 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reports how much heap the server's phone bills use per phone call, compared
+ * with keeping every phone call as a {@link PhoneCall} holding its own copies
+ * of its phone numbers. Customers call numbers drawn from a shared pool, as
+ * they do in practice. Run with
+ * <code>mvn -P jmh test-compile exec:exec -Djmh.main=edu.pdx.cs410J.kathtran.PhoneNumberHeapReport
+ * -Djmh.args="[customers] [calls per customer] [distinct callees]"</code>.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+public class PhoneNumberHeapReport {
+
+    /**
+     * Receives the phone calls created for the report.
+     */
+    private interface PhoneCallSink {
+        void accept(int customer, PhoneCall phoneCall);
+    }
+
+    public static void main(String... args) {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int callsPerCustomer = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int distinctCallees = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        long calls = (long) customers * callsPerCustomer;
+
+        long before = usedHeap();
+        List<PhoneCall> objects = new ArrayList<>();
+        createPhoneCalls(customers, callsPerCustomer, distinctCallees, (customer, phoneCall) -> objects.add(phoneCall));
+        long asObjects = usedHeap() - before;
+        objects.clear();
+
+        before = usedHeap();
+        int numbersBefore = PhoneNumberDictionary.SHARED.size();
+        List<PhoneBill> phoneBills = new ArrayList<>();
+        createPhoneCalls(customers, callsPerCustomer, distinctCallees, (customer, phoneCall) -> {
+            if (customer == phoneBills.size())
+                phoneBills.add(new PhoneBill("Customer " + customer));
+            phoneBills.get(customer).addPhoneCall(phoneCall);
+        });
+        long asPhoneBills = usedHeap() - before;
+
+        System.out.println(String.format("%,d phone calls in %,d phone bills, %,d distinct phone numbers",
+                calls, phoneBills.size(), PhoneNumberDictionary.SHARED.size() - numbersBefore));
+        System.out.println(String.format("  As PhoneCall objects: %,14d bytes (%6.1f bytes/call)",
+                asObjects, asObjects / (double) calls));
+        System.out.println(String.format("  As PhoneBills:        %,14d bytes (%6.1f bytes/call)",
+                asPhoneBills, asPhoneBills / (double) calls));
+        System.out.println(String.format("  Savings:              %,14.1fx", asObjects / (double) asPhoneBills));
+    }
+
+    /**
+     * Creates phone calls whose phone numbers are all distinct <code>String</code>
+     * objects, as they are when parsed from requests.
+     */
+    private static void createPhoneCalls(int customers, int callsPerCustomer, int distinctCallees,
+                                         PhoneCallSink sink) {
+        Random random = new Random(0);
+        long start = PhoneCall.getEpochMinutes("01/01/2015 12:00 AM");
+        for (int customer = 0; customer < customers; ++customer) {
+            String caller = String.format("503-%03d-%04d", customer / 10000, customer % 10000);
+            for (int i = 0; i < callsPerCustomer; ++i) {
+                int callee = random.nextInt(distinctCallees);
+                long startTime = start + i * 60L;
+                sink.accept(customer, new PhoneCall(new String(caller.toCharArray()),
+                        String.format("971-%03d-%04d", callee / 10000, callee % 10000), startTime, startTime + 5));
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; ++i)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,35 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the command line argument validation of {@link Project4}.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Project4Benchmark {
+
+    private final Project4 project4 = new Project4();
+
+    @Benchmark
+    public boolean isValidPhoneNumber() {
+        return this.project4.isValidPhoneNumber("503-555-1234");
+    }
+
+    @Benchmark
+    public boolean isValidDateAndTime() throws ParseException {
+        return this.project4.isValidDateAndTime("06/05/2015", "10:30", "AM");
+    }
+}
@@ -0,0 +1,140 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Counts the phone calls made to each callee, by the callee's identifier in
+ * the {@link PhoneNumberDictionary}. The counts are never changed once they
+ * have been created: counting one more call gives new counts, which share
+ * all but a few small arrays with the old ones. So a {@link PhoneBill} may
+ * count each call as it is added, and publish the counts with its state,
+ * without copying them and without readers ever counting the call records.
+ * <p>
+ * The counts are kept in a tree of arrays of 32 entries, indexed by five
+ * bits of the identifier at each level, so that counting a call copies one
+ * array per level and the tree only holds arrays for identifiers counted.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+final class CalleeCounts {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * No calls counted.
+     */
+    static final CalleeCounts EMPTY = new CalleeCounts(null, 0, 0);
+
+    /**
+     * The root of the tree: an <code>int[]</code> of counts if the shift is
+     * 0, and otherwise an <code>Object[]</code> of subtrees, any of which may
+     * be <code>null</code> if no callee under it has been counted.
+     */
+    private final Object root;
+
+    /**
+     * The number of bits of an identifier below the root's index.
+     */
+    private final int shift;
+
+    /**
+     * The number of distinct callees counted.
+     */
+    private final int callees;
+
+    private CalleeCounts(Object root, int shift, int callees) {
+        this.root = root;
+        this.shift = shift;
+        this.callees = callees;
+    }
+
+    /**
+     * @param callee the identifier of some callee
+     * @return these counts with one more call counted for the callee
+     */
+    CalleeCounts increment(int callee) {
+        Object root = this.root;
+        int shift = this.shift;
+        while (shift + BITS < Integer.SIZE && callee >>> (shift + BITS) != 0) {
+            Object[] grown = new Object[WIDTH];
+            grown[0] = root;
+            root = grown;
+            shift += BITS;
+        }
+        boolean first = get(root, shift, callee) == 0;
+        return new CalleeCounts(increment(root, shift, callee), shift, first ? this.callees + 1 : this.callees);
+    }
+
+    private static Object increment(Object node, int shift, int callee) {
+        if (shift == 0) {
+            int[] counts = node == null ? new int[WIDTH] : ((int[]) node).clone();
+            counts[callee & MASK] += 1;
+            return counts;
+        }
+        Object[] children = node == null ? new Object[WIDTH] : ((Object[]) node).clone();
+        int index = (callee >>> shift) & MASK;
+        children[index] = increment(children[index], shift - BITS, callee);
+        return children;
+    }
+
+    /**
+     * @param callee the identifier of some callee
+     * @return the number of calls counted for the callee
+     */
+    int get(int callee) {
+        if (this.shift + BITS < Integer.SIZE && callee >>> (this.shift + BITS) != 0)
+            return 0;
+        return get(this.root, this.shift, callee);
+    }
+
+    private static int get(Object node, int shift, int callee) {
+        while (node != null && shift > 0) {
+            node = ((Object[]) node)[(callee >>> shift) & MASK];
+            shift -= BITS;
+        }
+        return node == null ? 0 : ((int[]) node)[callee & MASK];
+    }
+
+    /**
+     * @return the number of distinct callees counted
+     */
+    int size() {
+        return this.callees;
+    }
+
+    /**
+     * Lists the counts by callee. This takes time in proportion to the number
+     * of distinct callees, however many calls were counted.
+     *
+     * @param numbers gives the phone number of each callee's identifier
+     * @return the number of calls counted for each callee, in order by the
+     * callees' phone numbers, as an unmodifiable map
+     */
+    SortedMap<String, Integer> toSortedMap(IntFunction<String> numbers) {
+        SortedMap<String, Integer> counts = new TreeMap<>();
+        collect(this.root, this.shift, 0, numbers, counts);
+        return Collections.unmodifiableSortedMap(counts);
+    }
+
+    private static void collect(Object node, int shift, int prefix, IntFunction<String> numbers,
+                                SortedMap<String, Integer> counts) {
+        if (node == null)
+            return;
+        if (shift == 0) {
+            int[] leaf = (int[]) node;
+            for (int i = 0; i < WIDTH; ++i)
+                if (leaf[i] != 0)
+                    counts.put(numbers.apply(prefix | i), leaf[i]);
+            return;
+        }
+        Object[] children = (Object[]) node;
+        for (int i = 0; i < WIDTH; ++i)
+            collect(children[i], shift - BITS, prefix | (i << shift), numbers, counts);
+    }
+}
@@ -0,0 +1,105 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long some operation took, in nanoseconds, in buckets whose
+ * widths grow with their values: every power of two is split into 16
+ * buckets, so that any percentile read back is within about 6% of the
+ * true value. Recording a value neither locks nor allocates, so many
+ * requests may record at once.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Counts one operation.
+     *
+     * @param nanos how long the operation took, in nanoseconds
+     */
+    void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        this.counts.incrementAndGet(bucketOf(nanos));
+        this.totalNanos.add(nanos);
+    }
+
+    /**
+     * @return the total time taken by every operation counted, in nanoseconds
+     */
+    long getTotalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    /**
+     * Copies the counts of the buckets. Operations counted while they are
+     * being copied may or may not be included.
+     *
+     * @return the number of operations counted in each bucket
+     */
+    long[] getCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i)
+            counts[i] = this.counts.get(i);
+        return counts;
+    }
+
+    /**
+     * Finds a percentile of the operations counted in some copy of the buckets.
+     *
+     * @param counts   the counts copied by {@link #getCounts()}
+     * @param fraction the fraction of operations, such as 0.99, that took no longer
+     *                 than the value to be found
+     * @return the largest value in the bucket that holds the percentile, in
+     * nanoseconds, or 0 if nothing was counted
+     */
+    static long percentile(long[] counts, double fraction) {
+        long total = 0;
+        for (long count : counts)
+            total += count;
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0)
+                return highestValueIn(i);
+        }
+        return highestValueIn(counts.length - 1);
+    }
+
+    /**
+     * @param nanos some value
+     * @return the bucket that counts the value
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket some bucket
+     * @return the largest value that the bucket counts
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,191 @@
+package edu.pdx.cs410J.kathtran;
+
+import edu.pdx.cs410J.web.HttpRequestHelper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Puts load on a phone bill server by sending it a mix of requests from
+ * many threads at once for a fixed length of time, and then reports how
+ * many requests were answered per second and how long they took.
+ * <p>
+ * The customers and phone calls are made up, but every phone number and
+ * time is checked with the same rules that {@link Project4} applies to
+ * its command line arguments, so that the server sees only valid data.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class LoadGenerator {
+
+    private static final String[] OPERATIONS = {"add", "read", "search"};
+    private static final long FIRST_START = 1420099200000L; // 1/1/2015 8:00 AM UTC
+    private static final int MINUTES_IN_YEAR = 365 * 24 * 60;
+
+    private final String hostName;
+    private final int port;
+    private final int threads;
+    private final long durationNanos;
+    private final int[] mix;
+    private final String[] customers;
+    private final Project4 rules = new Project4();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param hostName  the host of the server
+     * @param port      the port of the server
+     * @param threads   the number of threads sending requests
+     * @param seconds   how long to send requests for
+     * @param mix       the relative weights of adding a phone call, reading a
+     *                  phone bill, and searching a phone bill
+     * @param customers the number of customers to spread the requests over
+     */
+    LoadGenerator(String hostName, int port, int threads, int seconds, int[] mix, int customers) {
+        if (threads < 1 || seconds < 1 || customers < 1 || mix.length != OPERATIONS.length)
+            throw new IllegalArgumentException("Threads, seconds and customers must be positive");
+        int weight = 0;
+        for (int share : mix) {
+            if (share < 0)
+                throw new IllegalArgumentException("The mix of requests may not be negative");
+            weight += share;
+        }
+        if (weight == 0)
+            throw new IllegalArgumentException("The mix of requests must include some request");
+        this.hostName = hostName;
+        this.port = port;
+        this.threads = threads;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+        this.mix = mix.clone();
+        this.customers = new String[customers];
+        for (int i = 0; i < customers; ++i)
+            this.customers[i] = this.rules.correctNameCasing("load customer " + i);
+        for (int i = 0; i < OPERATIONS.length; ++i)
+            this.latencies[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Sends requests from every thread until the time is up, and then writes
+     * the throughput and latency percentiles of each kind of request.
+     *
+     * @param out where the report is written
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    void run(PrintStream out) throws InterruptedException {
+        long deadline = System.nanoTime() + this.durationNanos;
+        List<Thread> senders = new ArrayList<>(this.threads);
+        for (int i = 0; i < this.threads; ++i) {
+            long seed = i;
+            Thread sender = new Thread(() -> send(new Random(seed), deadline), "LoadGenerator-" + i);
+            senders.add(sender);
+            sender.start();
+        }
+        long start = System.nanoTime();
+        for (Thread sender : senders)
+            sender.join();
+        report(out, System.nanoTime() - start);
+    }
+
+    /**
+     * Sends requests one after another from this thread until the deadline.
+     */
+    private void send(Random random, long deadline) {
+        PhoneBillRestClient client = new PhoneBillRestClient(this.hostName, this.port);
+        SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy hh:mm a", Locale.US);
+        int totalWeight = this.mix[0] + this.mix[1] + this.mix[2];
+
+        while (System.nanoTime() < deadline) {
+            int pick = random.nextInt(totalWeight);
+            int operation = pick < this.mix[0] ? 0 : pick < this.mix[0] + this.mix[1] ? 1 : 2;
+            String customer = this.customers[random.nextInt(this.customers.length)];
+            long start = System.nanoTime();
+            try {
+                HttpRequestHelper.Response response;
+                if (operation == 0) {
+                    response = client.addCustomerPhoneCallPair(customer, randomPhoneCall(random, format));
+                } else if (operation == 1) {
+                    response = client.getPhoneBills(customer);
+                } else {
+                    long from = FIRST_START + TimeUnit.MINUTES.toMillis(random.nextInt(MINUTES_IN_YEAR));
+                    response = client.getSearchedPhoneBills(customer, validTime(format.format(new Date(from))),
+                            validTime(format.format(new Date(from + TimeUnit.DAYS.toMillis(7)))));
+                }
+                if (response.getCode() != HttpURLConnection.HTTP_OK)
+                    this.failures.increment();
+            } catch (IOException | IllegalStateException ex) {
+                this.failures.increment();
+            }
+            this.latencies[operation].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Makes up a phone call that lasts from one minute to two hours.
+     */
+    private PhoneCall randomPhoneCall(Random random, SimpleDateFormat format) {
+        long start = FIRST_START + TimeUnit.MINUTES.toMillis(random.nextInt(MINUTES_IN_YEAR));
+        long end = start + TimeUnit.MINUTES.toMillis(1 + random.nextInt(120));
+        return new PhoneCall(validPhoneNumber(random), validPhoneNumber(random),
+                validTime(format.format(new Date(start))), validTime(format.format(new Date(end))));
+    }
+
+    /**
+     * Makes up a phone number, and checks it as a command line argument would be.
+     */
+    private String validPhoneNumber(Random random) {
+        String number = String.format("%03d-%03d-%04d", 200 + random.nextInt(800), random.nextInt(1000),
+                random.nextInt(10000));
+        if (!this.rules.isValidPhoneNumber(number))
+            throw new IllegalStateException("Made up an invalid phone number " + number);
+        return number;
+    }
+
+    /**
+     * Checks a date and time as command line arguments would be.
+     */
+    private String validTime(String dateAndTime) {
+        String[] parts = dateAndTime.split(" ");
+        try {
+            if (this.rules.isValidDateAndTime(parts[0], parts[1], parts[2].toUpperCase()))
+                return dateAndTime;
+        } catch (NumberFormatException | ParseException ex) {
+            // Reported below
+        }
+        throw new IllegalStateException("Made up an invalid time " + dateAndTime);
+    }
+
+    /**
+     * Writes the number of requests of each kind, how many were answered per
+     * second, and percentiles of how long they took.
+     */
+    private void report(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        out.printf("%-8s %10s %12s %10s %10s %10s%n", "Request", "Count", "Per second", "p50 (ms)", "p99 (ms)",
+                "p999 (ms)");
+        for (int i = 0; i < OPERATIONS.length; ++i) {
+            long[] counts = this.latencies[i].getCounts();
+            long count = 0;
+            for (long bucket : counts)
+                count += bucket;
+            total += count;
+            out.printf("%-8s %10d %12.1f %10.3f %10.3f %10.3f%n", OPERATIONS[i], count, count / seconds,
+                    LatencyHistogram.percentile(counts, 0.5) / 1e6, LatencyHistogram.percentile(counts, 0.99) / 1e6,
+                    LatencyHistogram.percentile(counts, 0.999) / 1e6);
+        }
+        out.printf("%d requests from %d threads in %.1f seconds (%.1f per second), %d failed%n",
+                total, this.threads, seconds, total / seconds, this.failures.sum());
+    }
+}
@@ -1,5 +1,9 @@
 package edu.pdx.cs410J.kathtran;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
 /**
  * Class for formatting messages on the server side. This is mainly to enable
  * test methods that validate that the server returned expected strings.
@@ -9,6 +13,11 @@ package edu.pdx.cs410J.kathtran;
  */
 public class Messages {
 
+    /**
+     * Begins the line that gives the cursor of the next page of results.
+     */
+    private static final String NEXT_PAGE = "Next page after: ";
+
     /**
      * The number of mappings currently existing in the server. Mappings are
      * from a customer to his or her phone bill.
@@ -24,12 +33,60 @@ public class Messages {
      * A customer and his or her phone bill.
      *
      * @param customer  some name
-     * @param phoneBill a record that consists of all calling events
+     * @param phoneBill a record that consists of all calling events, or
+     *                  <code>null</code> if the customer has none
      * @return a formatted message that outputs the customer's name along with
      * the corresponding phone bill, pretty printed
      */
     public static String formatCustomerPhoneBillPair(String customer, PhoneBill phoneBill) {
-        return String.format("  %s's %s", customer, phoneBill.prettyPrint());
+        StringBuilder pair = new StringBuilder();
+        try {
+            writeCustomerPhoneBillPair(pair, customer, phoneBill);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return pair.toString();
+    }
+
+    /**
+     * Writes a customer and his or her phone bill in the same format as
+     * {@link #formatCustomerPhoneBillPair(String, PhoneBill)}, without first
+     * building the entire message as a <code>String</code>.
+     *
+     * @param out       where the message is written
+     * @param customer  some name
+     * @param phoneBill a record that consists of all calling events
+     * @throws IOException some IO error
+     */
+    public static void writeCustomerPhoneBillPair(Appendable out, String customer, PhoneBill phoneBill)
+            throws IOException {
+        out.append("  ").append(customer).append("'s ");
+        if (phoneBill == null)
+            out.append("phone bill is empty");
+        else
+            phoneBill.prettyPrint(out);
+    }
+
+    /**
+     * A summary of a customer's usage, without any of his or her call records.
+     *
+     * @param customer  some name
+     * @param phoneBill the customer's phone bill, or <code>null</code> if there is none
+     * @return a formatted message that outputs the number of calls, their total
+     * and longest durations, and the number of calls made to each callee
+     */
+    public static String formatUsage(String customer, PhoneBill phoneBill) {
+        StringBuilder usage = new StringBuilder();
+        usage.append("  ").append(customer).append("'s ");
+        if (phoneBill == null)
+            return usage.append("phone bill is empty").toString();
+        PhoneBill snapshot = phoneBill.getSnapshot();
+        usage.append(String.format("Usage%n  No. of Calls on Record: %d%n  Total Minutes: %d%n" +
+                        "  Longest Call (mins): %d%n  Calls per Callee:", snapshot.getPhoneCallCount(),
+                snapshot.getTotalMinutes(), snapshot.getLongestCallMinutes()));
+        for (Map.Entry<String, Integer> callee : snapshot.getCallsPerCallee().entrySet())
+            usage.append(String.format("%n    %s\t%d", callee.getKey(), callee.getValue()));
+        return usage.toString();
     }
 
     /**
@@ -46,11 +103,116 @@ public class Messages {
      * Notification of a successful mapping.
      *
      * @param customer  some name
-     * @param phoneBill a record that consists of all calling events
+     * @param phoneCall the calling event that was added to the customer's phone bill
      * @return a formatted message that makes note of the successful mapping
      */
-    public static String mappedCustomerPhoneBill(String customer, PhoneBill phoneBill) {
-        return String.format("Mapped %s to %s", customer, phoneBill.getMostRecentPhoneCall().toString());
+    public static String mappedCustomerPhoneBill(String customer, PhoneCall phoneCall) {
+        return String.format("Mapped %s to %s", customer, phoneCall.toString());
+    }
+
+    /**
+     * Notification of many successful mappings.
+     *
+     * @param phoneCallCount the number of calling events added
+     * @param customerCount  the number of customers whose phone bills were added to
+     * @return a formatted message that makes note of the successful mappings
+     */
+    public static String mappedPhoneCalls(int phoneCallCount, int customerCount) {
+        return String.format("Mapped %d phone calls to %d customers", phoneCallCount, customerCount);
+    }
+
+    /**
+     * Notification of two parameters that were not given the same number of times.
+     *
+     * @param parameterName  some parameter
+     * @param parameterName2 some other parameter
+     * @return a formatted message that makes note of the mismatched parameters
+     */
+    public static String mismatchedParameters(String parameterName, String parameterName2) {
+        return String.format("The parameter \"%s\" must be given once or as many times as \"%s\"",
+                parameterName, parameterName2);
+    }
+
+    /**
+     * Notification of a parameter whose value cannot be used.
+     *
+     * @param parameterName some parameter
+     * @param value         the value that was given
+     * @return a formatted message that makes note of the invalid parameter
+     */
+    public static String invalidParameter(String parameterName, String value) {
+        return String.format("The parameter \"%s\" has an invalid value \"%s\"", parameterName, value);
+    }
+
+    /**
+     * Notification of a request body that could not be read as phone calls.
+     *
+     * @param contentType the media type the body claimed to have
+     * @return a formatted message that makes note of the malformed body
+     */
+    public static String malformedPhoneCalls(String contentType) {
+        return String.format("The request body is not a complete list of phone calls in %s", contentType);
+    }
+
+    /**
+     * Notification of the phone calls added from the lines of a request body.
+     *
+     * @param phoneCallCount the number of calling events added
+     * @param lineCount      the number of lines read
+     * @param rejectedCount  the number of lines that were not valid phone calls
+     * @return a formatted message that makes note of the phone calls added
+     */
+    public static String addedPhoneCallLines(long phoneCallCount, long lineCount, long rejectedCount) {
+        return String.format("Added %d phone calls from %d lines, %d lines rejected",
+                phoneCallCount, lineCount, rejectedCount);
+    }
+
+    /**
+     * Notification of a line of a request body that is not a valid phone call.
+     *
+     * @param line   the number of the line
+     * @param column the position in the line of the first field that is wrong
+     * @param field  the name of that field
+     * @return a formatted message that makes note of where the line went wrong
+     */
+    public static String rejectedLine(long line, int column, String field) {
+        return String.format("Line %d, column %d: invalid %s", line, column, field);
+    }
+
+    /**
+     * Notification of rejected lines that were not listed one by one.
+     *
+     * @param count the number of rejected lines not listed
+     * @return a formatted message that makes note of the lines not listed
+     */
+    public static String moreRejectedLines(long count) {
+        return String.format("... and %d more lines rejected", count);
+    }
+
+    /**
+     * Notification that there are more results than were written, and of the
+     * cursor that asks for the next page of them.
+     *
+     * @param cursor the value of the "after" parameter for the next page
+     * @return a formatted message that makes note of the next page
+     */
+    public static String nextPage(String cursor) {
+        return NEXT_PAGE + cursor;
+    }
+
+    /**
+     * Finds the cursor of the next page in a page of results.
+     *
+     * @param page the text of some page of results
+     * @return the cursor written by {@link #nextPage(String)}, or <code>null</code>
+     * if this is the last page
+     */
+    public static String getNextPage(String page) {
+        for (String line : page.split("\n")) {
+            if (line.startsWith(NEXT_PAGE))
+                return line.substring(NEXT_PAGE.length()).trim();
+        }
+        return null;
     }
 
     /**
@@ -65,6 +227,28 @@ public class Messages {
                 "\n  Date(s)\tCaller\t\tCallee\t\tCall Began\tCall Ended\tDuration (mins)", customer);
     }
 
+    /**
+     * Search results for phone calls that some phone number was involved in,
+     * across every customer's phone bill.
+     *
+     * @param phoneNumber some phone number
+     * @return a formatted message that introduces the phone calls found
+     */
+    public static String searchPhoneNumberForCalls(String phoneNumber) {
+        return String.format("Phone calls that involve %s, by customer" +
+                "\n  Date(s)\tCaller\t\tCallee\t\tCall Began\tCall Ended\tDuration (mins)", phoneNumber);
+    }
+
+    /**
+     * Notification of no phone calls found for some phone number.
+     *
+     * @param phoneNumber some phone number
+     * @return a formatted message noting that no phone calls involve the number
+     */
+    public static String noCallsInvolving(String phoneNumber) {
+        return String.format("No call records involving %s were found", phoneNumber);
+    }
+
     /**
      * Notification of no phone calls found.
      *
@@ -75,4 +259,44 @@ public class Messages {
     public static String noCallsFound(String customer) {
         return String.format("No call records were found within %s's phone bill between the designated times", customer);
     }
+
+    /**
+     * Notification of the phone calls read back from the journal at startup.
+     *
+     * @param journalFile  the name of the journal
+     * @param count        the number of phone calls read
+     * @param elapsedNanos how long it took to read them, in nanoseconds
+     * @return a formatted message that makes note of the replay and its rate
+     */
+    public static String replayedJournal(String journalFile, long count, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("Replayed %d phone calls from %s in %.3f seconds (%.0f calls/second)",
+                count, journalFile, seconds, seconds > 0 ? count / seconds : 0.0);
+    }
+
+    /**
+     * Notification of the phone calls loaded from a snapshot at startup.
+     *
+     * @param snapshotFile the name of the snapshot
+     * @param count        the number of phone calls loaded
+     * @param elapsedNanos how long it took to load them, in nanoseconds
+     * @return a formatted message that makes note of the load and its rate
+     */
+    public static String loadedSnapshot(String snapshotFile, long count, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("Loaded %d phone calls from %s in %.3f seconds (%.0f calls/second)",
+                count, snapshotFile, seconds, seconds > 0 ? count / seconds : 0.0);
+    }
+
+    /**
+     * Notification of a snapshot having been written.
+     *
+     * @param snapshotFile the name of the snapshot
+     * @param count        the number of phone calls written
+     * @param elapsedNanos how long it took to write them, in nanoseconds
+     * @return a formatted message that makes note of the snapshot
+     */
+    public static String wroteSnapshot(String snapshotFile, long count, long elapsedNanos) {
+        return String.format("Wrote %d phone calls to %s in %.3f seconds", count, snapshotFile, elapsedNanos / 1e9);
+    }
 }
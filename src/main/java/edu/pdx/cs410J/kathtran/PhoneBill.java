@@ -3,9 +3,12 @@ package edu.pdx.cs410J.kathtran;
 import edu.pdx.cs410J.AbstractPhoneBill;
 import edu.pdx.cs410J.AbstractPhoneCall;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
 
 /**
  * Implements the abstract methods that can be found within the
@@ -17,7 +20,23 @@ import java.util.Collections;
  * v3.0 UPDATE: A pretty print method has been implemented. It
  * nicely formats the phone bill and its corresponding phone calls.
  * <p>
- * v4.0 UPDATE: Minor edits to the formatting of the pretty print method.
+ * v4.0 UPDATE: Minor edits to the formatting of the pretty print method,
+ * which may now write to any {@link Appendable}.
+ * Phone call records are kept in {@link PhoneCallColumns} ordered by their
+ * start times, so that searching between two times does not require a
+ * scan of the entire phone bill.
+ * Adding phone calls is synchronized on the phone bill itself, so that
+ * many clients may add to the same bill at once. Reading never locks:
+ * after each change the phone bill publishes an immutable {@link State}
+ * of its records and totals, which readers use while more calls are
+ * added, so that a slow reader never holds up a writer and every read
+ * sees the phone bill as it was at a single point in time. A frozen
+ * copy of that state, which may be read as often as needed, is given
+ * by {@link #getSnapshot()}.
+ * The total and longest durations of the calls are kept up to date as
+ * each call is added, so that they may be read without going through
+ * the call records. So are the number of calls made to each callee,
+ * in {@link CalleeCounts} that are published with each state.
  *
  * @author Kathleen Tran
  * @version 4.0
@@ -32,17 +51,105 @@ public class PhoneBill extends AbstractPhoneBill {
 
     /**
      * All phone call records that are associated with the
-     * customer. Each record, or item, is an instance of the
-     * {@link PhoneCall} class.
+     * customer. Each record is stored as primitives, and an
+     * instance of the {@link PhoneCall} class is only created
+     * when the record is asked for. This is <code>null</code>
+     * for a snapshot, which cannot be added to.
      */
-    private ArrayList phoneCalls;
+    private final PhoneCallColumns phoneCalls;
+
+    /**
+     * Whether or not the phone call records are known to be in order.
+     * Calls that arrive in chronological order keep the records sorted,
+     * so they only need to be sorted again after an out-of-order call.
+     */
+    private boolean sorted = true;
+
+    /**
+     * Counts the changes made to this phone bill, so that anything
+     * derived from it can tell whether or not it is still current.
+     */
+    private long version = 0;
+
+    /**
+     * Counts the times the records have been put back in order, so that a
+     * reader that has sorted them can tell whether or not its order still
+     * applies to the records held now.
+     */
+    private int ordering = 0;
+
+    /**
+     * Running totals of the phone call records, updated as each is added.
+     */
+    private long totalMinutes = 0;
+    private long longestCallMinutes = 0;
+    private CalleeCounts calleeCounts = CalleeCounts.EMPTY;
+
+    /**
+     * The phone bill as of the last change, which is what every reader sees.
+     */
+    private volatile State state;
+
+    /**
+     * The records and totals of a phone bill at some point in time. A state
+     * is never changed once it has been published, so it may be read from
+     * any thread without locking.
+     */
+    private static final class State {
+        private final PhoneCallColumns phoneCalls;
+        private final boolean sorted;
+        private final long version;
+        private final int ordering;
+        private final long totalMinutes;
+        private final long longestCallMinutes;
+        private final CalleeCounts calleeCounts;
+
+        /**
+         * The number of calls made to each callee, listed from the counts when
+         * first asked for. Threads that ask at once may each list them, but
+         * always to the same map.
+         */
+        private volatile SortedMap<String, Integer> callsPerCallee;
+
+        private State(PhoneCallColumns phoneCalls, boolean sorted, long version, int ordering, long totalMinutes,
+                      long longestCallMinutes, CalleeCounts calleeCounts) {
+            this.phoneCalls = phoneCalls;
+            this.sorted = sorted;
+            this.version = version;
+            this.ordering = ordering;
+            this.totalMinutes = totalMinutes;
+            this.longestCallMinutes = longestCallMinutes;
+            this.calleeCounts = calleeCounts;
+        }
+
+        /**
+         * @return the same state with its records in order
+         */
+        private State sort() {
+            State sorted = new State(this.phoneCalls.sorted(), true, this.version, this.ordering,
+                    this.totalMinutes, this.longestCallMinutes, this.calleeCounts);
+            sorted.callsPerCallee = this.callsPerCallee;
+            return sorted;
+        }
+
+        /**
+         * @return the number of calls made to each callee, which must not be changed
+         */
+        private SortedMap<String, Integer> getCallsPerCallee() {
+            SortedMap<String, Integer> counted = this.callsPerCallee;
+            if (counted == null) {
+                counted = this.calleeCounts.toSortedMap(this.phoneCalls::decode);
+                this.callsPerCallee = counted;
+            }
+            return counted;
+        }
+    }
 
     /**
      * Default constructor.
      */
     public PhoneBill() {
-        this.customer = null;
-        this.phoneCalls = new ArrayList<PhoneCall>();
+        this(null);
     }
 
     /**
@@ -53,7 +160,17 @@ public class PhoneBill extends AbstractPhoneBill {
      */
     public PhoneBill(String customer) {
         this.customer = customer;
-        this.phoneCalls = new ArrayList<PhoneCall>();
+        this.phoneCalls = new PhoneCallColumns();
+        publish();
+    }
+
+    /**
+     * Creates a snapshot of a phone bill, which holds the given state for good.
+     */
+    private PhoneBill(String customer, State state) {
+        this.customer = customer;
+        this.phoneCalls = null;
+        this.state = state;
     }
 
     /**
@@ -70,19 +187,161 @@ public class PhoneBill extends AbstractPhoneBill {
      * @param call an instance of the {@link PhoneCall} class that
      *             contains the caller's phone number, callee's phone
      *             number, and start and end times of the call
+     * @throws UnsupportedOperationException if this is a snapshot
      */
     @Override
-    public void addPhoneCall(AbstractPhoneCall call) {
-        this.phoneCalls.add(call);
+    public synchronized void addPhoneCall(AbstractPhoneCall call) {
+        append((PhoneCall) call);
+        publish();
+    }
+
+    /**
+     * Adds many phone call records to this phone bill at once. Readers
+     * see either all of them or none of them.
+     *
+     * @param calls instances of the {@link PhoneCall} class
+     * @throws UnsupportedOperationException if this is a snapshot
+     */
+    public synchronized void addPhoneCalls(Collection<? extends AbstractPhoneCall> calls) {
+        if (this.phoneCalls == null)
+            throw new UnsupportedOperationException("A snapshot of a phone bill cannot be added to");
+        this.phoneCalls.ensureCapacity(this.phoneCalls.size() + calls.size());
+        for (AbstractPhoneCall call : calls)
+            append((PhoneCall) call);
+        publish();
+    }
+
+    /**
+     * Adds a phone call record without publishing it to readers.
+     */
+    private void append(PhoneCall phoneCall) {
+        if (this.phoneCalls == null)
+            throw new UnsupportedOperationException("A snapshot of a phone bill cannot be added to");
+        this.phoneCalls.add(phoneCall);
+        this.version += 1;
+        long minutes = phoneCall.getEndMinutes() - phoneCall.getStartMinutes();
+        this.totalMinutes += minutes;
+        this.longestCallMinutes = Math.max(this.longestCallMinutes, minutes);
+        int last = this.phoneCalls.size() - 1;
+        this.calleeCounts = this.calleeCounts.increment(this.phoneCalls.getCalleeIdentifier(last));
+        if (this.sorted && last > 0 && this.phoneCalls.compare(last - 1, last) > 0)
+            this.sorted = false;
     }
 
     /**
-     * @return all of the phone calls (as instances of {@link
+     * Publishes the records and totals as they are now to readers. Must be
+     * called while synchronized on this phone bill.
+     */
+    private void publish() {
+        this.state = new State(this.phoneCalls.view(), this.sorted, this.version, this.ordering,
+                this.totalMinutes, this.longestCallMinutes, this.calleeCounts);
+    }
+
+    /**
+     * Gets the state of this phone bill with its records in order. If they
+     * are not in order, a copy of them is sorted without locking, and the
+     * order is then handed back to the phone bill, which is locked only
+     * long enough to take it, so that later readers need not sort again.
+     * A snapshot keeps the order for itself instead.
+     *
+     * @return the state as of the last change, with its records in order
+     */
+    private State sortedState() {
+        State current = this.state;
+        if (current.sorted)
+            return current;
+        State sorted = current.sort();
+        if (this.phoneCalls == null) {
+            this.state = sorted;
+            return sorted;
+        }
+        synchronized (this) {
+            if (this.ordering == current.ordering) {
+                this.phoneCalls.reorderFirst(sorted.phoneCalls);
+                this.ordering += 1;
+                this.sorted = this.phoneCalls.isSortedFrom(sorted.phoneCalls.size());
+                publish();
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Gets a snapshot of this phone bill: a phone bill that holds its phone
+     * calls, in order, and its totals as they are now, and that cannot be
+     * added to. Taking the snapshot copies none of the phone call records,
+     * and reading from it never locks, so it suits rendering a large phone
+     * bill while more calls are being added. Its version is the version of
+     * this phone bill at the time it was taken.
+     *
+     * @return a snapshot of this phone bill
+     */
+    public PhoneBill getSnapshot() {
+        return this.phoneCalls == null ? this : new PhoneBill(this.customer, sortedState());
+    }
+
+    /**
+     * Gets a snapshot of this phone bill without putting its phone calls in
+     * order first, which costs no more than reading the state last published.
+     * The snapshot's phone calls are put in order, without locking, only when
+     * it is read in order, so this suits taking snapshots of many phone bills
+     * at a single point in time.
+     *
+     * @return a snapshot of this phone bill
+     */
+    PhoneBill getUnsortedSnapshot() {
+        return this.phoneCalls == null ? this : new PhoneBill(this.customer, this.state);
+    }
+
+    /**
+     * @return a copy of all of the phone calls (as instances of {@link
      * AbstractPhoneCall}) in this phone bill
      */
     @Override
     public Collection getPhoneCalls() {
-        return this.phoneCalls;
+        PhoneCallColumns phoneCalls = this.state.phoneCalls;
+        List<PhoneCall> calls = new ArrayList<>(phoneCalls.size());
+        for (int i = 0; i < phoneCalls.size(); ++i)
+            calls.add(phoneCalls.get(i));
+        return calls;
+    }
+
+    /**
+     * @return a number that changes whenever a phone call is added
+     * to this phone bill
+     */
+    public long getVersion() {
+        return this.state.version;
+    }
+
+    /**
+     * @return the number of phone calls in this phone bill
+     */
+    public int getPhoneCallCount() {
+        return this.state.phoneCalls.size();
+    }
+
+    /**
+     * @return the total duration of the phone calls in this phone bill, in minutes
+     */
+    public long getTotalMinutes() {
+        return this.state.totalMinutes;
+    }
+
+    /**
+     * @return the duration of the longest phone call in this phone bill, in
+     * minutes, or 0 if there are none
+     */
+    public long getLongestCallMinutes() {
+        return this.state.longestCallMinutes;
+    }
+
+    /**
+     * @return the number of phone calls made to each callee, in order by the
+     * callees' phone numbers, as an unmodifiable map
+     */
+    public SortedMap<String, Integer> getCallsPerCallee() {
+        return this.state.getCallsPerCallee();
     }
 
     /**
@@ -92,15 +351,36 @@ public class PhoneBill extends AbstractPhoneBill {
      * @throws ArrayIndexOutOfBoundsException if the index is out of range
      */
     public Object getMostRecentPhoneCall() throws ArrayIndexOutOfBoundsException {
-        return this.phoneCalls.get(phoneCalls.size() - 1);
+        PhoneCallColumns phoneCalls = this.state.phoneCalls;
+        if (phoneCalls.size() == 0)
+            throw new ArrayIndexOutOfBoundsException(-1);
+        return phoneCalls.get(phoneCalls.size() - 1);
+    }
+
+    /**
+     * Gets the phone calls that began at or after the first given time and
+     * at or before the second given time, ordered by their start times.
+     *
+     * @param searchAfter  the lower bound time, in minutes since the epoch
+     * @param searchBefore the upper bound time, in minutes since the epoch
+     * @return the phone calls started between the two times
+     */
+    public List<PhoneCall> getPhoneCallsBetween(long searchAfter, long searchBefore) {
+        PhoneCallColumns phoneCalls = sortedState().phoneCalls;
+        List<PhoneCall> found = new ArrayList<>();
+        for (int i = phoneCalls.firstStartingAtOrAfter(searchAfter);
+             i < phoneCalls.size() && phoneCalls.getStartTime(i) <= searchBefore; ++i)
+            found.add(phoneCalls.get(i));
+        return found;
     }
 
     /**
      * Sorts the phone calls in the phone bill by starting time. Ties are
-     * broken by comparing the callers' phone numbers.
+     * broken by comparing the callers' phone numbers. Nothing is done if
+     * no call has been added out of order since the last sort.
      */
     public void sortPhoneCalls() {
-        Collections.sort(this.phoneCalls);
+        sortedState();
     }
 
     /**
@@ -110,20 +390,93 @@ public class PhoneBill extends AbstractPhoneBill {
      * @return the entire phone bill in its new pretty format
      */
     public String prettyPrint() {
-        sortPhoneCalls();
-        String divider = "  ====================";
-        int count = 0;
-        while (count < customer.length()) {
-            divider = divider.concat("=");
-            count += 1;
+        StringBuilder entireBill = new StringBuilder();
+        try {
+            prettyPrint(entireBill);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
-        String entireBill = "CS410J Phone Bill\n" + divider +
-                "\n  No. of Calls on Record: " + this.phoneCalls.size() +
-                "\n\n  Date(s)\tCaller\t\tCallee\t\tCall Began\tCall Ended\tDuration (mins)";
-        for (Object call : getPhoneCalls()) {
-            PhoneCall phoneCall = (PhoneCall) call;
-            entireBill = entireBill.concat(phoneCall.prettyPrint());
+        return entireBill.toString();
+    }
+
+    /**
+     * Writes out the phone bill and all of its call records in a
+     * user-friendly format, one call record at a time, so that the
+     * entire phone bill never needs to be held in memory as text.
+     *
+     * @param out where the phone bill is written
+     * @throws IOException some IO error
+     */
+    public void prettyPrint(Appendable out) throws IOException {
+        PhoneCallColumns phoneCalls = sortedState().phoneCalls;
+        prettyPrintHeader(out, phoneCalls);
+        for (int i = 0; i < phoneCalls.size(); ++i)
+            phoneCalls.get(i).prettyPrint(out);
+    }
+
+    /**
+     * Writes out the phone bill in the same format as {@link #prettyPrint(Appendable)},
+     * but with only one page of its call records. Pages are ordered by the calls'
+     * start times, and each page begins after the call named by a cursor returned
+     * with the previous page. A cursor names a call by its start time and caller,
+     * and by how many calls with the same start time and caller came before it,
+     * so cursors remain valid, and no call is repeated, as calls are added.
+     *
+     * @param out   where the phone bill is written
+     * @param after the cursor returned with the previous page, or <code>null</code>
+     *              for the first page
+     * @param limit the most call records to write, at least 1
+     * @return the cursor of the next page, or <code>null</code> if this is the last page
+     * @throws IOException              some IO error
+     * @throws IllegalArgumentException if the cursor is malformed, or the limit is less than 1
+     */
+    public String prettyPrint(Appendable out, String after, int limit) throws IOException {
+        if (limit < 1)
+            throw new IllegalArgumentException("A page must hold at least one call record");
+        PhoneCallColumns phoneCalls = sortedState().phoneCalls;
+        int first = 0;
+        if (after != null) {
+            String[] cursor = after.split(":", 3);
+            if (cursor.length != 3 || Integer.parseInt(cursor[1]) < 0)
+                throw new IllegalArgumentException(after);
+            long startTime = Long.parseLong(cursor[0]);
+            int skipped = Integer.parseInt(cursor[1]);
+            String caller = cursor[2];
+            first = phoneCalls.firstStartingAtOrAfter(startTime);
+            while (first < phoneCalls.size() && phoneCalls.getStartTime(first) == startTime
+                    && phoneCalls.compareCaller(first, caller) < 0)
+                ++first;
+            while (first < phoneCalls.size() && phoneCalls.getStartTime(first) == startTime
+                    && phoneCalls.compareCaller(first, caller) == 0 && skipped-- > 0)
+                ++first;
         }
-        return entireBill;
+        int end = (int) Math.min((long) first + limit, phoneCalls.size());
+
+        prettyPrintHeader(out, phoneCalls);
+        for (int i = first; i < end; ++i)
+            phoneCalls.get(i).prettyPrint(out);
+        if (end >= phoneCalls.size())
+            return null;
+
+        int last = end - 1;
+        int same = last;
+        while (same > 0 && phoneCalls.compare(same - 1, last) == 0)
+            --same;
+        return phoneCalls.getStartTime(last) + ":" + (end - same) + ":" + phoneCalls.get(last).getCaller();
+    }
+
+    /**
+     * Writes out the title and column headings of the phone bill.
+     *
+     * @param out        where the phone bill is written
+     * @param phoneCalls the call records being written
+     * @throws IOException some IO error
+     */
+    private void prettyPrintHeader(Appendable out, PhoneCallColumns phoneCalls) throws IOException {
+        out.append("CS410J Phone Bill\n  ====================");
+        for (int count = 0; count < customer.length(); ++count)
+            out.append('=');
+        out.append("\n  No. of Calls on Record: ").append(String.valueOf(phoneCalls.size()));
+        out.append("\n\n  Date(s)\tCaller\t\tCallee\t\tCall Began\tCall Ended\tDuration (mins)");
     }
 }
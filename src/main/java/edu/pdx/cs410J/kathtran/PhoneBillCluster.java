@@ -0,0 +1,198 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiFunction;
+
+/**
+ * Spreads customers across many phone bill servers, each of which holds the
+ * phone bills of only some of the customers. Each customer is routed to a
+ * server by consistent hashing: every server is placed at many points on a
+ * ring of hash values, and a customer belongs to the server at the first
+ * point at or after the hash of his or her name. Adding a server therefore
+ * moves only the customers that now hash to it, about one in every so many
+ * servers, and leaves the rest where they were.
+ * <p>
+ * Requests about a single customer are sent to that customer's server with
+ * its own {@link PhoneBillRestClient}. The listing of every phone bill asks
+ * every server at once and merges their answers.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneBillCluster implements Closeable {
+
+    /**
+     * The number of points on the ring for each server. More points spread
+     * customers more evenly.
+     */
+    static final int POINTS_PER_SERVER = 160;
+
+    private final List<String> endpoints;
+    private final List<PhoneBillRestClient> clients = new ArrayList<>();
+    private final NavigableMap<Integer, Integer> ring = new TreeMap<>();
+
+    /**
+     * @param endpoints the servers, each as <code>host:port</code>
+     * @throws IllegalArgumentException if there are no servers, or one is malformed
+     */
+    PhoneBillCluster(List<String> endpoints) {
+        this(endpoints, PhoneBillRestClient::new);
+    }
+
+    /**
+     * @param endpoints the servers, each as <code>host:port</code>
+     * @param connect   creates the client of a server from its host and port
+     * @throws IllegalArgumentException if there are no servers, or one is malformed
+     */
+    PhoneBillCluster(List<String> endpoints, BiFunction<String, Integer, PhoneBillRestClient> connect) {
+        if (endpoints.isEmpty())
+            throw new IllegalArgumentException("There must be at least one server");
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        for (int i = 0; i < endpoints.size(); ++i) {
+            String endpoint = endpoints.get(i);
+            int colon = endpoint.lastIndexOf(':');
+            if (colon <= 0)
+                throw new IllegalArgumentException("Server \"" + endpoint + "\" must be given as host:port");
+            this.clients.add(connect.apply(endpoint.substring(0, colon),
+                    Integer.parseInt(endpoint.substring(colon + 1))));
+            for (int point = 0; point < POINTS_PER_SERVER; ++point)
+                this.ring.putIfAbsent(hash(endpoint + "#" + point), i);
+        }
+    }
+
+    /**
+     * Pairs up comma-separated lists of hosts and ports. If only one host is
+     * given, it is used with every port, and if only one port is given, it is
+     * used with every host.
+     *
+     * @param hosts some host names, separated by commas
+     * @param ports some ports, separated by commas
+     * @return the servers, each as <code>host:port</code>
+     * @throws IllegalArgumentException if the lists cannot be paired up, or a
+     *                                  port is not an integer
+     */
+    static List<String> parseEndpoints(String hosts, String ports) {
+        String[] hostNames = hosts.split(",");
+        String[] portNumbers = ports.split(",");
+        int count = Math.max(hostNames.length, portNumbers.length);
+        if ((hostNames.length != 1 && hostNames.length != count) || (portNumbers.length != 1 && portNumbers.length != count))
+            throw new IllegalArgumentException("Give one host for every port, or a single host or port for all");
+        List<String> endpoints = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String host = hostNames[hostNames.length == 1 ? 0 : i].trim();
+            String port = portNumbers[portNumbers.length == 1 ? 0 : i].trim();
+            try {
+                Integer.parseInt(port);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Port \"" + port + "\" must be an integer");
+            }
+            if (host.isEmpty())
+                throw new IllegalArgumentException("Missing host");
+            endpoints.add(host + ":" + port);
+        }
+        return endpoints;
+    }
+
+    /**
+     * @return the servers, each as <code>host:port</code>
+     */
+    List<String> getEndpoints() {
+        return this.endpoints;
+    }
+
+    /**
+     * @param customer some name
+     * @return the server, as <code>host:port</code>, that holds the customer's phone bill
+     */
+    String endpointFor(String customer) {
+        return this.endpoints.get(serverFor(customer));
+    }
+
+    /**
+     * @param customer some name
+     * @return a client of the server that holds the customer's phone bill
+     */
+    PhoneBillRestClient clientFor(String customer) {
+        return this.clients.get(serverFor(customer));
+    }
+
+    /**
+     * Asks every server for its phone bills at once, and merges them into a
+     * single listing in the same form as a single server's, with customers in
+     * order by name.
+     *
+     * @return every customer and phone bill on every server
+     * @throws IOException if any server cannot be reached or does not answer
+     */
+    String getAllCustomersAndPhoneBills() throws IOException {
+        List<CompletableFuture<Map<String, List<PhoneCall>>>> answers = new ArrayList<>();
+        for (PhoneBillRestClient client : this.clients)
+            answers.add(client.getAllPhoneCallsAsync());
+
+        SortedMap<String, PhoneBill> merged = new TreeMap<>();
+        for (int i = 0; i < answers.size(); ++i) {
+            Map<String, List<PhoneCall>> phoneCalls;
+            try {
+                phoneCalls = answers.get(i).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + this.endpoints.get(i), ex);
+            } catch (ExecutionException ex) {
+                throw new IOException("While contacting " + this.endpoints.get(i) + ": " + ex.getCause(), ex.getCause());
+            }
+            for (Map.Entry<String, List<PhoneCall>> entry : phoneCalls.entrySet())
+                merged.computeIfAbsent(entry.getKey(), PhoneBill::new).addPhoneCalls(entry.getValue());
+        }
+
+        StringBuilder listing = new StringBuilder();
+        listing.append(Messages.getMappingCount(merged.size())).append(System.lineSeparator());
+        for (Map.Entry<String, PhoneBill> entry : merged.entrySet()) {
+            Messages.writeCustomerPhoneBillPair(listing, entry.getKey(), entry.getValue());
+            listing.append(System.lineSeparator());
+        }
+        return listing.toString();
+    }
+
+    /**
+     * Closes the client of every server.
+     */
+    @Override
+    public void close() {
+        for (PhoneBillRestClient client : this.clients)
+            client.close();
+    }
+
+    /**
+     * @return the position in {@link #endpoints} of the server that holds the customer's phone bill
+     */
+    private int serverFor(String customer) {
+        Map.Entry<Integer, Integer> point = this.ring.ceilingEntry(hash(customer));
+        return (point != null ? point : this.ring.firstEntry()).getValue();
+    }
+
+    /**
+     * @return the first four bytes of the MD5 digest of the text, which are
+     * spread evenly however alike the texts are
+     */
+    private static int hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8));
+            return (digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16 | (digest[2] & 0xff) << 8 | (digest[3] & 0xff);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("MD5 is required of every Java platform", ex);
+        }
+    }
+}
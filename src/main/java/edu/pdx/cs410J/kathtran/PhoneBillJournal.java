@@ -0,0 +1,369 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.BiConsumer;
+
+/**
+ * An append-only file of every phone call that has been added to the
+ * server, used to rebuild the phone bills when the server restarts.
+ * <p>
+ * Each record holds the customer's name, the caller and callee numbers,
+ * and the start and end times in minutes since the epoch. Records are
+ * buffered in memory until some request needs them to be durable. That
+ * request then writes out and forces every record buffered so far,
+ * including those of other requests, so that concurrent requests share
+ * a single disk flush (group commit). The buffered records are taken
+ * while the journal is locked, but written and forced after it is
+ * unlocked, so that adding records never waits on the disk.
+ * <p>
+ * Every record has a position: the number of bytes of records written
+ * before it since the journal was created. Once a {@link PhoneBillSnapshot}
+ * holds every record before some position, the journal is rotated to drop
+ * them, and only the records from that position on are replayed. The file
+ * begins with a magic number and the position of its first record, so that
+ * positions still refer to the same records after the journal is rotated.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneBillJournal implements Closeable {
+
+    private static final int MAGIC = 0x50424A31;
+    private static final int HEADER_SIZE = 12;
+
+    private final File file;
+
+    /**
+     * The open journal file, which is replaced when the journal is rotated.
+     * Guarded by {@link #syncLock}.
+     */
+    private FileChannel channel;
+
+    /**
+     * The position of the first record in the file.
+     */
+    private long base;
+
+    /**
+     * Records that have been appended but not yet written to the file.
+     */
+    private final RecordBuffer pending = new RecordBuffer();
+    private final DataOutputStream records = new DataOutputStream(pending);
+
+    /**
+     * Guards the writing and forcing of the file to disk, so that only one
+     * request does so at a time while the others wait for the result.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * Records taken from {@link #pending} that have not all been written,
+     * because writing them failed. They are written before any others.
+     * Guarded by {@link #syncLock}.
+     */
+    private ByteBuffer unwritten = ByteBuffer.allocate(0);
+
+    /**
+     * A buffer of records that can be cut back to the end of the last
+     * complete record if encoding a record fails part way through.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        void truncate(int size) {
+            this.count = size;
+        }
+    }
+
+    /**
+     * The number of records appended, and the number known to be on disk.
+     */
+    private long appended = 0;
+    private long synced = 0;
+
+    /**
+     * Opens the journal at the given location, creating it if need be.
+     *
+     * @param file where the journal is kept
+     * @throws IOException some IO error
+     */
+    PhoneBillJournal(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (this.channel.size() < HEADER_SIZE) {
+                // A new journal, or one whose header was never completely written
+                this.channel.truncate(0);
+                writeHeader(this.channel, 0);
+                this.channel.force(false);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining() && this.channel.read(header, header.position()) >= 0)
+                    ;
+                header.flip();
+                if (header.getInt() != MAGIC)
+                    throw new IOException(file + " is not a phone bill journal");
+                this.base = header.getLong();
+            }
+            this.channel.position(this.channel.size());
+        } catch (IOException ex) {
+            this.channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes the magic number and the position of the first record at the
+     * start of a journal file.
+     */
+    private static void writeHeader(FileChannel channel, long base) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(base).flip();
+        channel.position(0);
+        while (header.hasRemaining())
+            channel.write(header);
+    }
+
+    /**
+     * Reads every record in the journal, from the first one it still holds.
+     *
+     * @param replayTo receives the customer and phone call of each record
+     * @return the number of records read
+     * @throws IOException some IO error
+     * @see #replay(long, BiConsumer)
+     */
+    long replay(BiConsumer<String, PhoneCall> replayTo) throws IOException {
+        return replay(this.base, replayTo);
+    }
+
+    /**
+     * Reads every record in the journal from the given position on. A record
+     * left incomplete by a crash is discarded, and the journal is truncated to
+     * the last complete record so that new records may follow it.
+     *
+     * @param from     the position of the first record to be read, such as the
+     *                 position that a snapshot was taken at
+     * @param replayTo receives the customer and phone call of each record
+     * @return the number of records read
+     * @throws IOException some IO error, or if the journal no longer holds the
+     *                     record at the given position
+     */
+    synchronized long replay(long from, BiConsumer<String, PhoneCall> replayTo) throws IOException {
+        if (from < this.base || from > this.base + this.channel.size() - HEADER_SIZE)
+            throw new IOException("Journal " + this.file + " holds positions " + this.base + " to "
+                    + (this.base + this.channel.size() - HEADER_SIZE) + ", not " + from);
+        long position = HEADER_SIZE + from - this.base;
+        this.channel.position(position);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(this.channel)));
+        long count = 0;
+        long complete = position;
+        try {
+            while (true) {
+                String customer = in.readUTF();
+                String caller = in.readUTF();
+                String callee = in.readUTF();
+                long startTime = in.readLong();
+                long endTime = in.readLong();
+                position += 2 + utfLength(customer) + 2 + utfLength(caller) + 2 + utfLength(callee) + 16;
+                replayTo.accept(customer, new PhoneCall(caller, callee, startTime, endTime));
+                complete = position;
+                count += 1;
+            }
+        } catch (EOFException ex) {
+            // Reached the end of the journal, possibly in the middle of a torn record
+        }
+        this.channel.truncate(complete);
+        this.channel.position(complete);
+        return count;
+    }
+
+    /**
+     * Appends a phone call to the journal and waits until it is on disk.
+     *
+     * @param customer  some name
+     * @param phoneCall the phone call added to the customer's phone bill
+     * @throws IOException some IO error
+     */
+    void append(String customer, PhoneCall phoneCall) throws IOException {
+        append(customer, Collections.singletonList(phoneCall));
+    }
+
+    /**
+     * Appends many phone calls to the journal and waits until they are on disk.
+     *
+     * @param customer   some name
+     * @param phoneCalls the phone calls added to the customer's phone bill
+     * @throws IOException some IO error
+     */
+    void append(String customer, Collection<PhoneCall> phoneCalls) throws IOException {
+        sync(write(customer, phoneCalls));
+    }
+
+    /**
+     * Appends many phone calls to the journal without waiting for them to
+     * reach the disk. {@link #sync(long)} must be called with the returned
+     * record number before the phone calls are considered durable.
+     *
+     * @param customer   some name
+     * @param phoneCalls the phone calls added to the customer's phone bill
+     * @return the number of records appended so far, including these
+     * @throws IOException some IO error, such as a string too long to encode,
+     *                     in which case none of the phone calls are appended
+     */
+    synchronized long write(String customer, Collection<PhoneCall> phoneCalls) throws IOException {
+        int start = this.pending.size();
+        try {
+            for (PhoneCall phoneCall : phoneCalls) {
+                this.records.writeUTF(customer);
+                this.records.writeUTF(phoneCall.getCaller());
+                this.records.writeUTF(phoneCall.getCallee());
+                this.records.writeLong(phoneCall.getStartMinutes());
+                this.records.writeLong(phoneCall.getEndMinutes());
+            }
+        } catch (IOException ex) {
+            this.pending.truncate(start);
+            throw ex;
+        }
+        this.appended += phoneCalls.size();
+        return this.appended;
+    }
+
+    /**
+     * Makes sure that the given number of records are on disk. If another
+     * request has already forced them there, nothing more is done.
+     *
+     * @param record the number of records that must be on disk
+     * @throws IOException some IO error
+     */
+    void sync(long record) throws IOException {
+        synchronized (this.syncLock) {
+            if (this.synced >= record)
+                return;
+            long written;
+            byte[] taken;
+            synchronized (this) {
+                taken = this.pending.toByteArray();
+                this.pending.reset();
+                written = this.appended;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(taken);
+            if (this.unwritten.hasRemaining()) {
+                buffer = ByteBuffer.allocate(this.unwritten.remaining() + taken.length);
+                buffer.put(this.unwritten).put(taken);
+                buffer.flip();
+            }
+            this.unwritten = buffer;
+            while (buffer.hasRemaining())
+                this.channel.write(buffer);
+            this.channel.force(false);
+            this.synced = written;
+        }
+    }
+
+    /**
+     * Writes out every record appended so far and gets the position just past
+     * them, which is where the next record appended will go. A snapshot taken
+     * while no records are being appended holds exactly the records before
+     * this position.
+     *
+     * @return the position of the end of the journal
+     * @throws IOException some IO error
+     */
+    long position() throws IOException {
+        synchronized (this.syncLock) {
+            long record;
+            synchronized (this) {
+                record = this.appended;
+            }
+            sync(record);
+            return this.base + this.channel.position() - HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Drops every record before the given position, once a snapshot holds
+     * them. The remaining records are copied to a new file, which then
+     * replaces the journal, so that a crash part way through leaves either
+     * the old journal or the new one. Records may be appended meanwhile, but
+     * are not written to the file until the new one is in place.
+     *
+     * @param position the position of the first record to be kept
+     * @throws IOException some IO error, in which case the old journal is kept
+     */
+    void rotate(long position) throws IOException {
+        synchronized (this.syncLock) {
+            long end = this.channel.position();
+            long from = HEADER_SIZE + position - this.base;
+            if (from < HEADER_SIZE || from > end)
+                throw new IOException("Journal " + this.file + " does not hold position " + position);
+            File temporary = new File(this.file.getPath() + ".tmp");
+            FileChannel rotated = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                writeHeader(rotated, position);
+                while (from < end)
+                    from += this.channel.transferTo(from, end - from, rotated);
+                rotated.force(false);
+                Files.move(temporary.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                rotated.close();
+                Files.deleteIfExists(temporary.toPath());
+                throw ex;
+            }
+            FileChannel replaced = this.channel;
+            this.channel = rotated;
+            this.base = position;
+            replaced.close();
+        }
+    }
+
+    /**
+     * @param text some text
+     * @return the number of bytes the text occupies in modified UTF-8
+     */
+    private static int utfLength(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F)
+                length += 1;
+            else if (c > 0x07FF)
+                length += 3;
+            else
+                length += 2;
+        }
+        return length;
+    }
+
+    /**
+     * Writes out any buffered records and closes the journal.
+     *
+     * @throws IOException some IO error
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.syncLock) {
+            long record;
+            synchronized (this) {
+                record = this.appended;
+            }
+            sync(record);
+            this.channel.close();
+        }
+    }
+}
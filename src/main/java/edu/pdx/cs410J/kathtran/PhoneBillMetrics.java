@@ -0,0 +1,86 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counts the requests handled by a {@link PhoneBillServlet} and how long
+ * they took, by operation: adding phone calls, reading a single phone bill,
+ * searching a phone bill between two times, and listing every phone bill.
+ * Also keeps track of the number of customers and phone calls on the server.
+ * <p>
+ * The metrics are written as plain text, one value per line, for
+ * {@link PhoneBillMetricsServlet} to serve.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneBillMetrics {
+
+    /**
+     * The name of the servlet context attribute under which the metrics are kept.
+     */
+    static final String ATTRIBUTE = PhoneBillMetrics.class.getName();
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    final LatencyHistogram adds = new LatencyHistogram();
+    final LatencyHistogram reads = new LatencyHistogram();
+    final LatencyHistogram searches = new LatencyHistogram();
+    final LatencyHistogram listings = new LatencyHistogram();
+
+    private final LongAdder phoneCalls = new LongAdder();
+    private final IntSupplier customers;
+    private final long started = System.nanoTime();
+
+    /**
+     * @param customers counts the customers on the server
+     */
+    PhoneBillMetrics(IntSupplier customers) {
+        this.customers = customers;
+    }
+
+    /**
+     * Counts phone calls added to the server.
+     *
+     * @param count the number of phone calls added
+     */
+    void addedPhoneCalls(int count) {
+        this.phoneCalls.add(count);
+    }
+
+    /**
+     * Writes every metric, one per line, as its name, any labels in braces, and
+     * its value. Latencies are given in microseconds.
+     *
+     * @param out where the metrics are written
+     * @throws IOException some IO error
+     */
+    void write(Appendable out) throws IOException {
+        out.append(String.format("phonebill_uptime_seconds %d%n", (System.nanoTime() - this.started) / 1000000000L));
+        out.append(String.format("phonebill_customers %d%n", this.customers.getAsInt()));
+        out.append(String.format("phonebill_phone_calls %d%n", this.phoneCalls.sum()));
+        write(out, "add", this.adds);
+        write(out, "read", this.reads);
+        write(out, "search", this.searches);
+        write(out, "list", this.listings);
+    }
+
+    /**
+     * Writes the count, total time, and percentiles of one operation.
+     */
+    private static void write(Appendable out, String operation, LatencyHistogram latencies) throws IOException {
+        long[] counts = latencies.getCounts();
+        long count = 0;
+        for (long bucket : counts)
+            count += bucket;
+        out.append(String.format("phonebill_requests{operation=\"%s\"} %d%n", operation, count));
+        out.append(String.format("phonebill_latency_micros_sum{operation=\"%s\"} %d%n",
+                operation, latencies.getTotalNanos() / 1000));
+        for (double percentile : PERCENTILES) {
+            out.append(String.format("phonebill_latency_micros{operation=\"%s\",quantile=\"%s\"} %.1f%n",
+                    operation, percentile, LatencyHistogram.percentile(counts, percentile) / 1000.0));
+        }
+    }
+}
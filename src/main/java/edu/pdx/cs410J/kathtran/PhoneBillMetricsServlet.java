@@ -0,0 +1,45 @@
+package edu.pdx.cs410J.kathtran;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Serves the {@link PhoneBillMetrics} of the {@link PhoneBillServlet} in
+ * the same web application as plain text, so that they may be read by a
+ * person or scraped by a monitoring tool.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+public class PhoneBillMetricsServlet extends HttpServlet {
+
+    /**
+     * Writes the current metrics to the HTTP response. If the phone bill servlet
+     * has not started yet, there are no metrics, and the status 503 (Service
+     * Unavailable) is sent instead.
+     *
+     * @param request  data from the client
+     * @param response data returned to the client
+     * @throws ServletException some servlet error
+     * @throws IOException      some IO error
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        response.setContentType("text/plain");
+
+        PhoneBillMetrics metrics = (PhoneBillMetrics) getServletContext().getAttribute(PhoneBillMetrics.ATTRIBUTE);
+        if (metrics == null) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        PrintWriter pw = response.getWriter();
+        metrics.write(pw);
+        pw.flush();
+    }
+}
@@ -2,20 +2,64 @@ package edu.pdx.cs410J.kathtran;
 
 import edu.pdx.cs410J.web.HttpRequestHelper;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
 
 /**
  * A helper class for accessing the rest client. The methods here
  * support the formatting of the URLs used to reach various data
  * that has been queried by the user.
+ * <p>
+ * Phone calls are posted as text unless the client is created to use the
+ * binary form of {@link PhoneCallCodec}. Phone calls may always be fetched
+ * in that form, already decoded, with {@link #getPhoneCalls(String)},
+ * {@link #getAllPhoneCalls()} and {@link #getSearchedPhoneCalls(String, String, String)}.
+ * <p>
+ * The methods whose names end in "Async" send their requests from a pool of
+ * threads, so that many requests may be outstanding at once, and return
+ * without waiting for the response. At most a given number of requests are
+ * in flight at a time; once that many are outstanding, the next call waits
+ * for one of them to finish. Their responses are always read in full, so
+ * that the connections they used are kept alive and reused by later requests.
+ * The JDK keeps at most <code>http.maxConnections</code> idle connections to
+ * each server (5 unless set), a limit read once for the whole JVM, so it must
+ * be given on the command line, as <code>-Dhttp.maxConnections=n</code>, for
+ * more requests than that in flight to reuse their connections.
  *
  * @author Kathleen Tran
  * @version 4.0
  */
-public class PhoneBillRestClient extends HttpRequestHelper {
+public class PhoneBillRestClient extends HttpRequestHelper implements Closeable {
     private static final String WEB_APP = "phonebill";
     private static final String SERVLET = "calls";
+    private static final int DEFAULT_MAX_IN_FLIGHT = 8;
     private final String url;
+    private final boolean encoded;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private ExecutorService requests;
 
     /**
      * Creates a client to the Phone Bill REST service running on the given host and port
@@ -24,7 +68,37 @@ public class PhoneBillRestClient extends HttpRequestHelper {
      * @param port     The port
      */
     public PhoneBillRestClient(String hostName, int port) {
+        this(hostName, port, false);
+    }
+
+    /**
+     * Creates a client to the Phone Bill REST service running on the given host and port
+     *
+     * @param hostName The name of the host
+     * @param port     The port
+     * @param encoded  whether phone calls are posted in the binary form of
+     *                 {@link PhoneCallCodec} rather than as text
+     */
+    public PhoneBillRestClient(String hostName, int port, boolean encoded) {
+        this(hostName, port, encoded, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Creates a client to the Phone Bill REST service running on the given host and port
+     *
+     * @param hostName    The name of the host
+     * @param port        The port
+     * @param encoded     whether phone calls are posted in the binary form of
+     *                    {@link PhoneCallCodec} rather than as text
+     * @param maxInFlight the most asynchronous requests that may be outstanding at once
+     */
+    public PhoneBillRestClient(String hostName, int port, boolean encoded, int maxInFlight) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("At least one request must be allowed in flight");
         this.url = String.format("http://%s:%d/%s/%s", hostName, port, WEB_APP, SERVLET);
+        this.encoded = encoded;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
     }
 
     /**
@@ -46,6 +120,69 @@ public class PhoneBillRestClient extends HttpRequestHelper {
         return get(this.url, "customer", customer);
     }
 
+    /**
+     * Returns a summary of the given customer's phone calls: how many there are,
+     * their total and longest durations, and how many were made to each callee.
+     *
+     * @param customer some name
+     * @throws IOException some IO error
+     */
+    public Response getUsage(String customer) throws IOException {
+        return get(this.url, "customer", customer, "usage", "true");
+    }
+
+    /**
+     * Returns every phone call, on any customer's phone bill, that the given
+     * phone number was involved in as either the caller or the callee.
+     *
+     * @param phoneNumber some phone number
+     * @throws IOException some IO error
+     */
+    public Response getCallsInvolving(String phoneNumber) throws IOException {
+        return get(this.url, "phoneNumber", phoneNumber);
+    }
+
+    /**
+     * Returns one page of customers and phone bills from the server, in order
+     * by the customers' names.
+     *
+     * @param limit the most customers to return
+     * @param after the cursor of the page, as given by {@link #getNextPage(Response)}
+     *              for the previous page, or <code>null</code> for the first page
+     * @throws IOException some IO error
+     */
+    public Response getAllCustomersAndPhoneBills(int limit, String after) throws IOException {
+        if (after == null)
+            return get(this.url, "limit", String.valueOf(limit));
+        return get(this.url, "limit", String.valueOf(limit), "after", after);
+    }
+
+    /**
+     * Returns one page of the phone calls for the given customer, in order by
+     * their start times.
+     *
+     * @param customer some name
+     * @param limit    the most phone calls to return
+     * @param after    the cursor of the page, as given by {@link #getNextPage(Response)}
+     *                 for the previous page, or <code>null</code> for the first page
+     * @throws IOException some IO error
+     */
+    public Response getPhoneBills(String customer, int limit, String after) throws IOException {
+        if (after == null)
+            return get(this.url, "customer", customer, "limit", String.valueOf(limit));
+        return get(this.url, "customer", customer, "limit", String.valueOf(limit), "after", after);
+    }
+
+    /**
+     * Finds the cursor of the page that follows the given page.
+     *
+     * @param page a response to a request for some page
+     * @return the cursor of the next page, or <code>null</code> if there are no more pages
+     */
+    public static String getNextPage(Response page) {
+        return Messages.getNextPage(page.getContent());
+    }
+
     /**
      * Returns all phone calls between some given time specified by the user.
      *
@@ -68,6 +205,362 @@ public class PhoneBillRestClient extends HttpRequestHelper {
      * @throws IOException some IO error
      */
     public Response addCustomerPhoneCallPair(String customer, PhoneCall phoneCall) throws IOException {
+        if (this.encoded)
+            return postEncoded(customer, Collections.singletonList(phoneCall));
         return post(this.url, "customer", customer, "phoneCall", phoneCall.toString());
     }
+
+    /**
+     * Adds many phone call records to the phone bill of the specified customer
+     * using a single request.
+     *
+     * @param customer   some name
+     * @param phoneCalls contains the records of some phone calls
+     * @return a summary of the phone calls that were added
+     * @throws IOException some IO error
+     */
+    public Response addPhoneCalls(String customer, Collection<PhoneCall> phoneCalls) throws IOException {
+        if (this.encoded)
+            return postEncoded(customer, phoneCalls);
+        return post(this.url, phoneCallParameters(customer, phoneCalls));
+    }
+
+    /**
+     * Sends the request of {@link #addCustomerPhoneCallPair(String, PhoneCall)}
+     * without waiting for the response.
+     *
+     * @param customer  some name
+     * @param phoneCall contains the record of some phone call
+     * @return the response to come
+     */
+    public CompletableFuture<Response> addCustomerPhoneCallPairAsync(String customer, PhoneCall phoneCall) {
+        return addPhoneCallsAsync(customer, Collections.singletonList(phoneCall));
+    }
+
+    /**
+     * Sends the request of {@link #addPhoneCalls(String, Collection)} without
+     * waiting for the response. The phone calls are encoded before this returns,
+     * so the collection may be reused at once.
+     *
+     * @param customer   some name
+     * @param phoneCalls contains the records of some phone calls
+     * @return the response to come
+     */
+    public CompletableFuture<Response> addPhoneCallsAsync(String customer, Collection<PhoneCall> phoneCalls) {
+        if (this.encoded) {
+            List<PhoneCall> copy = new ArrayList<>(phoneCalls);
+            return submit(() -> postEncoded(customer, copy));
+        }
+        String[] parameters = phoneCallParameters(customer, phoneCalls);
+        return submit(() -> send("POST", parameters));
+    }
+
+    /**
+     * Adds many phone call records, each to the phone bill of the customer in the
+     * same position, using a single request sent without waiting for the response.
+     * The phone calls are encoded before this returns, so the lists may be reused at once.
+     *
+     * @param customers  one name per phone call
+     * @param phoneCalls contains the records of some phone calls
+     * @return a summary of the phone calls that were added, to come
+     */
+    public CompletableFuture<Response> addPhoneCallsAsync(List<String> customers, List<PhoneCall> phoneCalls) {
+        if (customers.size() != phoneCalls.size())
+            throw new IllegalArgumentException("Each phone call must have a customer");
+        if (this.encoded) {
+            List<String> customersCopy = new ArrayList<>(customers);
+            List<PhoneCall> phoneCallsCopy = new ArrayList<>(phoneCalls);
+            return submit(() -> postEncoded(customersCopy, phoneCallsCopy));
+        }
+        String[] parameters = new String[4 * phoneCalls.size()];
+        for (int i = 0, j = 0; i < phoneCalls.size(); ++i) {
+            parameters[j++] = "customer";
+            parameters[j++] = customers.get(i);
+            parameters[j++] = "phoneCall";
+            parameters[j++] = phoneCalls.get(i).toString();
+        }
+        return submit(() -> send("POST", parameters));
+    }
+
+    /**
+     * Sends the request of {@link #getPhoneBills(String)} without waiting for the response.
+     *
+     * @param customer some name
+     * @return the response to come
+     */
+    public CompletableFuture<Response> getPhoneBillsAsync(String customer) {
+        return submit(() -> send("GET", "customer", customer));
+    }
+
+    /**
+     * Sends the request of {@link #getSearchedPhoneBills(String, String, String)}
+     * without waiting for the response.
+     *
+     * @param customer  some name
+     * @param startTime some time of day
+     * @param endTime   some time of day
+     * @return the response to come
+     */
+    public CompletableFuture<Response> getSearchedPhoneBillsAsync(String customer, String startTime, String endTime) {
+        return submit(() -> send("GET", "customer", customer, "startTime", startTime, "endTime", endTime));
+    }
+
+    /**
+     * Sends the request of {@link #getAllCustomersAndPhoneBills()} without waiting for the response.
+     *
+     * @return the response to come
+     */
+    public CompletableFuture<Response> getAllCustomersAndPhoneBillsAsync() {
+        return submit(() -> send("GET"));
+    }
+
+    /**
+     * Sends the request of {@link #getAllPhoneCalls()} without waiting for the response.
+     *
+     * @return each customer's phone calls, to come
+     */
+    public CompletableFuture<Map<String, List<PhoneCall>>> getAllPhoneCallsAsync() {
+        return submit(this::getAllPhoneCalls);
+    }
+
+    /**
+     * Waits for the asynchronous requests still in flight, and then stops the
+     * threads that sent them.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.requests == null)
+                return;
+        }
+        this.inFlight.acquireUninterruptibly(this.maxInFlight);
+        try {
+            synchronized (this) {
+                this.requests.shutdown();
+                this.requests = null;
+            }
+        } finally {
+            this.inFlight.release(this.maxInFlight);
+        }
+    }
+
+    /**
+     * Runs a request on one of the client's threads once fewer than the
+     * maximum number of requests are in flight, waiting until then if need be.
+     *
+     * @param request sends some request and reads its response
+     * @return the response to come
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> request) {
+        CompletableFuture<T> response = new CompletableFuture<>();
+        try {
+            this.inFlight.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            response.completeExceptionally(ex);
+            return response;
+        }
+        try {
+            requests().execute(() -> {
+                try {
+                    response.complete(request.call());
+                } catch (Throwable ex) {
+                    response.completeExceptionally(ex);
+                } finally {
+                    this.inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            this.inFlight.release();
+            response.completeExceptionally(ex);
+        }
+        return response;
+    }
+
+    /**
+     * @return the threads that send asynchronous requests, which are started
+     * the first time they are needed
+     */
+    private synchronized ExecutorService requests() {
+        if (this.requests == null) {
+            this.requests = Executors.newFixedThreadPool(this.maxInFlight, runnable -> {
+                Thread thread = new Thread(runnable, "PhoneBillRestClient");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.requests;
+    }
+
+    /**
+     * Sends a request whose parameters are form encoded, and reads its response
+     * in full so that the connection may be reused.
+     *
+     * @param method     "GET" or "POST"
+     * @param parameters name/value pairs of the request
+     * @return the response
+     * @throws IOException some IO error
+     */
+    private Response send(String method, String... parameters) throws IOException {
+        String form = formEncode(parameters);
+        HttpURLConnection conn;
+        if (method.equals("GET")) {
+            conn = (HttpURLConnection) new URL(form.isEmpty() ? this.url : this.url + "?" + form).openConnection();
+        } else {
+            conn = (HttpURLConnection) new URL(this.url).openConnection();
+            conn.setRequestMethod(method);
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(form.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return respond(conn);
+    }
+
+    /**
+     * Reads the response to a request, and closes its stream so that the
+     * connection is returned to the pool of kept-alive connections.
+     *
+     * @param conn a connection whose request has been sent
+     * @return the response
+     * @throws IOException some IO error
+     */
+    private Response respond(HttpURLConnection conn) throws IOException {
+        Response response = new Response(conn);
+        InputStream in = conn.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST
+                ? conn.getInputStream() : conn.getErrorStream();
+        if (in != null)
+            in.close();
+        return response;
+    }
+
+    /**
+     * @param customer   some name
+     * @param phoneCalls contains the records of some phone calls
+     * @return the name/value pairs that add the phone calls to the customer's phone bill
+     */
+    private static String[] phoneCallParameters(String customer, Collection<PhoneCall> phoneCalls) {
+        String[] parameters = new String[2 + 2 * phoneCalls.size()];
+        parameters[0] = "customer";
+        parameters[1] = customer;
+        int i = 2;
+        for (PhoneCall phoneCall : phoneCalls) {
+            parameters[i++] = "phoneCall";
+            parameters[i++] = phoneCall.toString();
+        }
+        return parameters;
+    }
+
+    /**
+     * @param parameters name/value pairs
+     * @return the pairs, encoded as an HTML form
+     * @throws IOException if UTF-8 is not supported
+     */
+    private static String formEncode(String... parameters) throws IOException {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < parameters.length; i += 2) {
+            if (i > 0)
+                form.append('&');
+            form.append(URLEncoder.encode(parameters[i], "UTF-8"))
+                    .append('=').append(URLEncoder.encode(parameters[i + 1], "UTF-8"));
+        }
+        return form.toString();
+    }
+
+    /**
+     * Returns all phone calls for the given customer, ordered by their start times.
+     *
+     * @param customer some name
+     * @return the customer's phone calls, which are empty if there is no such customer
+     * @throws IOException some IO error
+     */
+    public List<PhoneCall> getPhoneCalls(String customer) throws IOException {
+        List<PhoneCall> phoneCalls = new ArrayList<>();
+        getEncoded((name, phoneCall) -> phoneCalls.add(phoneCall), "customer", customer);
+        return phoneCalls;
+    }
+
+    /**
+     * Returns the phone calls of the given customer that began between the two given times.
+     *
+     * @param customer  some name
+     * @param startTime some time of day
+     * @param endTime   some time of day
+     * @return phone calls that were started between the startTime and endTime times
+     * @throws IOException some IO error
+     */
+    public List<PhoneCall> getSearchedPhoneCalls(String customer, String startTime, String endTime)
+            throws IOException {
+        List<PhoneCall> phoneCalls = new ArrayList<>();
+        getEncoded((name, phoneCall) -> phoneCalls.add(phoneCall),
+                "customer", customer, "startTime", startTime, "endTime", endTime);
+        return phoneCalls;
+    }
+
+    /**
+     * Returns the phone calls of every customer.
+     *
+     * @return each customer's phone calls, with the customers in order by name
+     * @throws IOException some IO error
+     */
+    public Map<String, List<PhoneCall>> getAllPhoneCalls() throws IOException {
+        Map<String, List<PhoneCall>> phoneCalls = new LinkedHashMap<>();
+        getEncoded((name, phoneCall) -> phoneCalls.computeIfAbsent(name, k -> new ArrayList<>()).add(phoneCall));
+        return phoneCalls;
+    }
+
+    /**
+     * Posts phone calls in the binary form of {@link PhoneCallCodec}.
+     *
+     * @param customer   some name
+     * @param phoneCalls contains the records of some phone calls
+     * @return a summary of the phone calls that were added
+     * @throws IOException some IO error
+     */
+    private Response postEncoded(String customer, Collection<PhoneCall> phoneCalls) throws IOException {
+        return postEncoded(Collections.nCopies(phoneCalls.size(), customer), phoneCalls);
+    }
+
+    /**
+     * Posts phone calls in the binary form of {@link PhoneCallCodec}.
+     *
+     * @param customers  one name per phone call
+     * @param phoneCalls contains the records of some phone calls
+     * @return a summary of the phone calls that were added
+     * @throws IOException some IO error
+     */
+    private Response postEncoded(List<String> customers, Collection<PhoneCall> phoneCalls) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(this.url).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", PhoneCallCodec.CONTENT_TYPE);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(conn.getOutputStream()))) {
+            int i = 0;
+            for (PhoneCall phoneCall : phoneCalls)
+                PhoneCallCodec.write(out, customers.get(i++), phoneCall);
+            PhoneCallCodec.writeEnd(out);
+        }
+        return respond(conn);
+    }
+
+    /**
+     * Gets phone calls in the binary form of {@link PhoneCallCodec}, handing each
+     * to the given consumer as it is read.
+     *
+     * @param readInto   receives the customer and phone call of each record
+     * @param parameters name/value pairs of the request
+     * @throws IOException if the server does not answer with phone calls
+     */
+    private void getEncoded(BiConsumer<String, PhoneCall> readInto, String... parameters) throws IOException {
+        String form = formEncode(parameters);
+        HttpURLConnection conn = (HttpURLConnection) new URL(form.isEmpty() ? this.url : this.url + "?" + form)
+                .openConnection();
+        conn.setRequestProperty("Accept", PhoneCallCodec.CONTENT_TYPE);
+        if (conn.getResponseCode() != HttpURLConnection.HTTP_OK || !PhoneCallCodec.isNamedBy(conn.getContentType()))
+            throw new IOException("Server answered " + conn.getResponseCode() + " " + conn.getContentType());
+        try (InputStream in = new BufferedInputStream(conn.getInputStream())) {
+            PhoneCallCodec.read(in, readInto);
+        }
+    }
 }
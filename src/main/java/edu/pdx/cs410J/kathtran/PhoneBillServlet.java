@@ -4,23 +4,229 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This servlet ultimately provides a REST API for working with an
  * <code>PhoneBill</code>. The methods here support communication
- * between the server and the client.
+ * between the server and the client. Requests may be handled
+ * concurrently: phone bills are kept in a concurrent map and each
+ * phone bill synchronizes its own phone call records.
+ * <p>
+ * If the "journal" init parameter names a file, every phone call added
+ * is also written to that {@link PhoneBillJournal}, and the phone bills
+ * are rebuilt from it whenever the servlet starts. If the "snapshot" init
+ * parameter names a file, a {@link PhoneBillSnapshot} is written there
+ * periodically and loaded first at startup, and the journal is then
+ * replayed from the position that the snapshot was taken at.
+ * <p>
+ * Both the listing of every phone bill and a single customer's phone bill
+ * may be read a page at a time, by giving a "limit" on the size of the page
+ * and, for every page after the first, the "after" cursor that ended the
+ * previous page. Customers are listed in order by name, and phone calls in
+ * order by start time.
+ * <p>
+ * Giving the "usage" parameter with a customer asks for a summary of the
+ * customer's phone bill instead of its call records. Giving the
+ * "phoneNumber" parameter instead of a customer finds every phone call,
+ * on any customer's phone bill, that the number was involved in.
+ * <p>
+ * Phone calls are sent and received as text by default. A client may instead
+ * post, or accept, phone calls in the binary form of {@link PhoneCallCodec}
+ * by naming its media type in the "Content-Type" or "Accept" header. Any
+ * number of phone calls may also be posted as lines of text, as described
+ * by {@link PhoneCallLines}, which are added as the request body arrives.
+ * <p>
+ * Every request is counted and timed in {@link PhoneBillMetrics}, which
+ * {@link PhoneBillMetricsServlet} serves from the same web application.
  *
  * @author Kathleen Tran
  * @version 4.0
  */
 public class PhoneBillServlet extends HttpServlet {
-    private final Map<String, PhoneBill> data = new HashMap<>();
-    private static PrintWriter pw;
+    private static final int LINE_BATCH_SIZE = 1000;
+    private static final int MAX_REJECTED_LINES_LISTED = 100;
+    private PhoneBillShards data = new PhoneBillShards(PhoneBillShards.DEFAULT_SHARD_COUNT);
+    private final NavigableSet<String> customers = new ConcurrentSkipListSet<>();
+    private final PhoneNumberIndex phoneNumbers = new PhoneNumberIndex();
+    private final RenderedPhoneBillCache renderedPhoneBills = new RenderedPhoneBillCache(256, 1000);
+    private final String instanceTag = Long.toHexString(System.currentTimeMillis());
+    private final PhoneBillMetrics metrics = new PhoneBillMetrics(() -> this.data.size());
+    private PhoneBillJournal journal;
+
+    /**
+     * Held for reading while phone calls are written to the journal and added
+     * to the phone bills, and for writing while a snapshot is taken, so that
+     * the snapshot holds exactly the records before its journal position.
+     */
+    private final ReadWriteLock storing = new ReentrantReadWriteLock();
+    private File snapshot;
+    private ScheduledExecutorService snapshotWriter;
+
+    /**
+     * Partitions the phone bills across the number of {@link PhoneBillShards}
+     * given by the "shards" init parameter, if it is given, and then rebuilds
+     * them from the snapshot named by the "snapshot" init
+     * parameter and from the journal named by the "journal" init parameter,
+     * whichever are given. The journal is replayed from the position that the
+     * snapshot was taken at, since the snapshot holds every phone call before
+     * it. Snapshots are then written in the
+     * background every "snapshotInterval" seconds (300 by default). Finally,
+     * the servlet's metrics are made available to the rest of the web application.
+     *
+     * @throws ServletException if an init parameter is malformed, or if the
+     *                          snapshot or journal cannot be read
+     */
+    @Override
+    public void init() throws ServletException {
+        String shards = getInitParameter("shards");
+        if (shards != null && !shards.isEmpty()) {
+            try {
+                this.data = new PhoneBillShards(Integer.parseInt(shards.trim()));
+            } catch (IllegalArgumentException ex) {
+                throw new ServletException("The number of shards must be a positive integer: " + shards, ex);
+            }
+        }
+
+        String interval = getInitParameter("snapshotInterval");
+        long snapshotSeconds = 300;
+        if (interval != null && !interval.isEmpty()) {
+            try {
+                snapshotSeconds = Long.parseLong(interval.trim());
+            } catch (NumberFormatException ex) {
+                throw new ServletException("The snapshot interval must be a positive number of seconds: "
+                        + interval, ex);
+            }
+            if (snapshotSeconds < 1)
+                throw new ServletException("The snapshot interval must be a positive number of seconds: "
+                        + interval);
+        }
+
+        String snapshotFile = getInitParameter("snapshot");
+        String journalFile = getInitParameter("journal");
+        long journalPosition = 0;
+
+        if (snapshotFile != null && !snapshotFile.isEmpty()) {
+            this.snapshot = new File(snapshotFile);
+            try {
+                long start = System.nanoTime();
+                journalPosition = PhoneBillSnapshot.readJournalPosition(this.snapshot);
+                long count = PhoneBillSnapshot.read(this.snapshot, (customer, phoneCalls) -> {
+                    PhoneBill phoneBill = phoneBillOf(customer);
+                    phoneBill.addPhoneCalls(phoneCalls);
+                    this.phoneNumbers.add(phoneBill.getCustomer(), phoneCalls);
+                    this.metrics.addedPhoneCalls(phoneCalls.size());
+                });
+                log(Messages.loadedSnapshot(snapshotFile, count, System.nanoTime() - start));
+            } catch (IOException ex) {
+                throw new ServletException("While reading snapshot " + snapshotFile, ex);
+            }
+        }
+
+        if (journalFile != null && !journalFile.isEmpty()) {
+            try {
+                this.journal = new PhoneBillJournal(new File(journalFile));
+                long start = System.nanoTime();
+                long count = this.journal.replay(journalPosition, (customer, phoneCall) -> {
+                    PhoneBill phoneBill = phoneBillOf(customer);
+                    phoneBill.addPhoneCall(phoneCall);
+                    this.phoneNumbers.add(phoneBill.getCustomer(), Collections.singletonList(phoneCall));
+                    this.metrics.addedPhoneCalls(1);
+                });
+                log(Messages.replayedJournal(journalFile, count, System.nanoTime() - start));
+            } catch (IOException ex) {
+                throw new ServletException("While reading journal " + journalFile, ex);
+            }
+        }
+
+        if (this.snapshot != null) {
+            this.snapshotWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "PhoneBillSnapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.snapshotWriter.scheduleWithFixedDelay(this::writeSnapshot, snapshotSeconds, snapshotSeconds,
+                    TimeUnit.SECONDS);
+        }
+
+        getServletContext().setAttribute(PhoneBillMetrics.ATTRIBUTE, this.metrics);
+    }
+
+    /**
+     * Writes a final snapshot, if snapshots are kept, and closes the journal,
+     * if there is one.
+     */
+    @Override
+    public void destroy() {
+        getServletContext().removeAttribute(PhoneBillMetrics.ATTRIBUTE);
+        if (this.snapshotWriter != null) {
+            // Let a snapshot being written finish, rather than interrupt it
+            // and close the journal's file along with it
+            this.snapshotWriter.shutdown();
+            try {
+                this.snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            writeSnapshot();
+        }
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException ex) {
+                log("While closing journal", ex);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of every phone bill, and then drops the phone calls it
+     * holds from the journal. Phone calls are only kept from being stored while
+     * the state of each phone bill and the journal's position are taken, which
+     * copies none of the phone call records; they are stored as usual while the
+     * snapshot is written.
+     */
+    void writeSnapshot() {
+        try {
+            long start = System.nanoTime();
+            List<PhoneBill> phoneBills = new ArrayList<>();
+            long journalPosition = 0;
+            this.storing.writeLock().lock();
+            try {
+                for (PhoneBill phoneBill : this.data.values())
+                    phoneBills.add(phoneBill.getUnsortedSnapshot());
+                if (this.journal != null)
+                    journalPosition = this.journal.position();
+            } finally {
+                this.storing.writeLock().unlock();
+            }
+            long count = PhoneBillSnapshot.write(this.snapshot, journalPosition, phoneBills);
+            if (this.journal != null)
+                this.journal.rotate(journalPosition);
+            log(Messages.wroteSnapshot(this.snapshot.getPath(), count, System.nanoTime() - start));
+        } catch (IOException ex) {
+            log("While writing snapshot " + this.snapshot, ex);
+        }
+    }
 
     /**
      * Handles an HTTP GET request from a client by writing the value of the key
@@ -40,19 +246,83 @@ public class PhoneBillServlet extends HttpServlet {
         String customer = getParameter("customer", request);
         String searchAfter = getParameter("startTime", request);
         String searchBefore = getParameter("endTime", request);
+        String limit = getParameter("limit", request);
+        String after = getParameter("after", request);
+        String usage = getParameter("usage", request);
+        String phoneNumber = getParameter("phoneNumber", request);
 
+        long start = System.nanoTime();
+        LatencyHistogram latencies;
         if (customer != null && searchAfter == null && searchBefore == null)
-            writePhoneBill(customer, response);
-        else if (customer != null && searchAfter != null && searchBefore != null)
-            writeTimeSpecifiedPhoneBill(customer, searchAfter, searchBefore, response);
+            latencies = this.metrics.reads;
+        else if (customer != null && searchAfter != null && searchBefore != null || phoneNumber != null)
+            latencies = this.metrics.searches;
         else
-            writeAllMappings(response);
+            latencies = this.metrics.listings;
+        try {
+            if (customer != null && usage != null) {
+                writeUsage(customer, response);
+                return;
+            }
+            if (customer == null && phoneNumber != null) {
+                writeCallsInvolving(phoneNumber, response);
+                return;
+            }
+
+            if (customer != null && searchAfter != null && searchBefore != null) {
+                if (PhoneCallParser.parseDateTime(searchAfter) == PhoneCallParser.INVALID) {
+                    invalidParameter(response, "startTime", searchAfter);
+                    return;
+                }
+                if (PhoneCallParser.parseDateTime(searchBefore) == PhoneCallParser.INVALID) {
+                    invalidParameter(response, "endTime", searchBefore);
+                    return;
+                }
+            }
+
+            if (PhoneCallCodec.isNamedBy(request.getHeader("Accept"))) {
+                writeEncodedPhoneCalls(customer, searchAfter, searchBefore, response);
+                return;
+            }
+
+            int pageSize = Integer.MAX_VALUE;
+            if (limit != null) {
+                try {
+                    pageSize = Integer.parseInt(limit);
+                } catch (NumberFormatException ex) {
+                    pageSize = 0;
+                }
+                if (pageSize < 1) {
+                    invalidParameter(response, "limit", limit);
+                    return;
+                }
+            }
+
+            if (customer != null && searchAfter == null && searchBefore == null) {
+                if (limit == null && after == null)
+                    writePhoneBill(customer, request, response);
+                else
+                    writePhoneBillPage(customer, pageSize, after, response);
+            } else if (customer != null && searchAfter != null && searchBefore != null)
+                writeTimeSpecifiedPhoneBill(customer, searchAfter, searchBefore, response);
+            else
+                writeAllMappings(pageSize, after, response);
+        } finally {
+            latencies.record(System.nanoTime() - start);
+        }
     }
 
     /**
      * Handles an HTTP POST request by storing the customer/phone bill pair specified by the
      * "customer" and "phoneCall" request parameters.  It writes the customer/phone bill pair
      * to the HTTP response.
+     * <p>
+     * Many phone calls may be added at once by repeating the "phoneCall" parameter. They are
+     * all added to the phone bill of a single "customer", or, if the "customer" parameter is
+     * repeated as well, to the phone bill of the customer in the same position. A summary of
+     * the phone calls added is then written to the HTTP response instead. The same is done
+     * when the request's body holds phone calls encoded by {@link PhoneCallCodec}, or one
+     * phone call per line as described by {@link PhoneCallLines}.
      *
      * @param request  data from the client
      * @param response data returned to the client
@@ -63,32 +333,275 @@ public class PhoneBillServlet extends HttpServlet {
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         response.setContentType("text/plain");
 
-        String customer = getParameter("customer", request);
-        if (customer == null) {
-            missingRequiredParameter(response, "customer");
+        long start = System.nanoTime();
+        try {
+            if (PhoneCallCodec.isNamedBy(request.getContentType())) {
+                addEncodedPhoneCalls(request, response);
+                return;
+            }
+            if (PhoneCallLines.isNamedBy(request.getContentType())) {
+                addPhoneCallLines(request, response);
+                return;
+            }
+
+            String[] customers = getParameterValues("customer", request);
+            if (customers == null) {
+                missingRequiredParameter(response, "customer");
+                return;
+            }
+
+            String[] phoneCalls = getParameterValues("phoneCall", request);
+            if (phoneCalls == null) {
+                missingRequiredParameter(response, "phoneCall");
+                return;
+            }
+
+            if (customers.length != 1 && customers.length != phoneCalls.length) {
+                mismatchedParameters(response, "customer", "phoneCall");
+                return;
+            }
+
+            if (phoneCalls.length == 1)
+                addPhoneCall(customers[0], phoneCalls[0], response);
+            else
+                addPhoneCalls(customers, phoneCalls, response);
+        } finally {
+            this.metrics.adds.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Adds a single phone call to the phone bill of the given customer, and writes
+     * the customer/phone call pair to the HTTP response.
+     *
+     * @param customer  some name
+     * @param phoneCall some phone call, as described by {@link PhoneCall#toString()}
+     * @param response  data returned to the client
+     * @throws IOException some IO error
+     */
+    private void addPhoneCall(String customer, String phoneCall, HttpServletResponse response) throws IOException {
+        PhoneCall phoneCallToAdd = PhoneCall.parse(phoneCall);
+        if (phoneCallToAdd == null) {
+            invalidParameter(response, "phoneCall", phoneCall);
             return;
         }
+        store(customer, Collections.singletonList(phoneCallToAdd));
+
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.mappedCustomerPhoneBill(customer, phoneCallToAdd));
+
+        pw.flush();
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Adds many phone calls at once. All of the phone calls are parsed before any
+     * are stored, so that none are stored if any is malformed, and each customer's
+     * phone calls are then added to his or her phone bill together. A summary is
+     * written to the HTTP response.
+     *
+     * @param customers  a single name, or one name per phone call
+     * @param phoneCalls some phone calls, as described by {@link PhoneCall#toString()}
+     * @param response   data returned to the client
+     * @throws IOException some IO error
+     */
+    private void addPhoneCalls(String[] customers, String[] phoneCalls, HttpServletResponse response)
+            throws IOException {
+        Map<String, List<PhoneCall>> phoneCallsToAdd = new LinkedHashMap<>();
+        for (int i = 0; i < phoneCalls.length; ++i) {
+            String customer = customers.length == 1 ? customers[0] : customers[i];
+            PhoneCall phoneCall = PhoneCall.parse(phoneCalls[i]);
+            if (phoneCall == null) {
+                invalidParameter(response, "phoneCall", phoneCalls[i]);
+                return;
+            }
+            phoneCallsToAdd.computeIfAbsent(customer, k -> new ArrayList<>()).add(phoneCall);
+        }
+        for (Map.Entry<String, List<PhoneCall>> entry : phoneCallsToAdd.entrySet())
+            store(entry.getKey(), entry.getValue());
+
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.mappedPhoneCalls(phoneCalls.length, phoneCallsToAdd.size()));
 
-        String phoneCall = getParameter("phoneCall", request);
-        if (phoneCall == null) {
-            missingRequiredParameter(response, "phoneCall");
+        pw.flush();
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Adds the phone calls encoded by {@link PhoneCallCodec} in the body of the
+     * request. The whole body is read and every phone call is checked before any
+     * is stored, so that nothing is added if the body is malformed or holds a
+     * phone call that would not be accepted as text. A summary is written to the
+     * HTTP response.
+     *
+     * @param request  data from the client
+     * @param response data returned to the client
+     * @throws IOException some IO error
+     */
+    private void addEncodedPhoneCalls(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Map<String, List<PhoneCall>> phoneCallsToAdd = new LinkedHashMap<>();
+        long count;
+        try {
+            count = PhoneCallCodec.read(request.getInputStream(), (customer, phoneCall) ->
+                    phoneCallsToAdd.computeIfAbsent(customer, k -> new ArrayList<>()).add(phoneCall));
+        } catch (IOException ex) {
+            PrintWriter pw = response.getWriter();
+            pw.println(Messages.malformedPhoneCalls(PhoneCallCodec.CONTENT_TYPE));
+
+            pw.flush();
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
             return;
         }
+        for (Map.Entry<String, List<PhoneCall>> entry : phoneCallsToAdd.entrySet()) {
+            if (entry.getKey().trim().isEmpty()) {
+                invalidParameter(response, "customer", entry.getKey());
+                return;
+            }
+            for (PhoneCall phoneCall : entry.getValue()) {
+                if (!isValidEncodedPhoneCall(phoneCall)) {
+                    invalidParameter(response, "phoneCall", phoneCall.getCaller() + " to " + phoneCall.getCallee()
+                            + " from " + phoneCall.getStartMinutes() + " to " + phoneCall.getEndMinutes());
+                    return;
+                }
+            }
+        }
+        for (Map.Entry<String, List<PhoneCall>> entry : phoneCallsToAdd.entrySet())
+            store(entry.getKey(), entry.getValue());
 
-        PhoneCall phoneCallToAdd = new PhoneCall(phoneCall);
-        PhoneBill phoneBill = this.data.get(customer);
-        if (phoneBill == null)
-            phoneBill = new PhoneBill(customer);
-        phoneBill.addPhoneCall(phoneCallToAdd);
-        this.data.put(customer, phoneBill);
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.mappedPhoneCalls((int) count, phoneCallsToAdd.size()));
+
+        pw.flush();
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Checks a phone call read from a binary body by the same rules as one read
+     * as text: both phone numbers must be of the form <code>nnn-nnn-nnnn</code>,
+     * and both times must be dates and times the text form could name. The call
+     * must also not end before it starts.
+     *
+     * @param phoneCall some phone call
+     * @return True if the phone call may be stored, otherwise false
+     */
+    private static boolean isValidEncodedPhoneCall(PhoneCall phoneCall) {
+        long start = phoneCall.getStartMinutes();
+        long end = phoneCall.getEndMinutes();
+        return PhoneCallParser.parsePhoneNumber(phoneCall.getCaller()) >= 0
+                && PhoneCallParser.parsePhoneNumber(phoneCall.getCallee()) >= 0
+                && start >= PhoneCallParser.MIN_DATE_TIME && end <= PhoneCallParser.MAX_DATE_TIME && start <= end;
+    }
+
+    /**
+     * Adds the phone calls in the lines of the request body, as described by
+     * {@link PhoneCallLines}, while the body is still arriving. Phone calls are
+     * stored in batches of {@link #LINE_BATCH_SIZE}, so that only one batch is
+     * ever held, and lines that are not valid phone calls are left out. A summary
+     * is written to the HTTP response, followed by the position of each rejected
+     * line, up to {@link #MAX_REJECTED_LINES_LISTED} of them.
+     *
+     * @param request  data from the client
+     * @param response data returned to the client
+     * @throws IOException some IO error
+     */
+    private void addPhoneCallLines(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String charset = request.getCharacterEncoding();
+        Reader in = new InputStreamReader(request.getInputStream(), charset != null ? charset : "UTF-8");
+        Map<String, List<PhoneCall>> batch = new LinkedHashMap<>();
+        List<String> rejections = new ArrayList<>();
+        long[] counts = new long[3];
 
-        pw = response.getWriter();
-        pw.println(Messages.mappedCustomerPhoneBill(customer, phoneBill));
+        long lines = PhoneCallLines.read(in, new PhoneCallLines.Handler() {
+            @Override
+            public void phoneCall(String customer, PhoneCall phoneCall) throws IOException {
+                batch.computeIfAbsent(customer, k -> new ArrayList<>()).add(phoneCall);
+                counts[0] += 1;
+                if (++counts[1] == LINE_BATCH_SIZE) {
+                    storeAll(batch);
+                    counts[1] = 0;
+                }
+            }
+
+            @Override
+            public void rejected(long line, int column, String field) {
+                counts[2] += 1;
+                if (rejections.size() < MAX_REJECTED_LINES_LISTED)
+                    rejections.add(Messages.rejectedLine(line, column, field));
+            }
+        });
+        storeAll(batch);
+
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.addedPhoneCallLines(counts[0], lines, counts[2]));
+        for (String rejection : rejections)
+            pw.println(rejection);
+        if (counts[2] > rejections.size())
+            pw.println(Messages.moreRejectedLines(counts[2] - rejections.size()));
 
         pw.flush();
         response.setStatus(HttpServletResponse.SC_OK);
     }
 
+    /**
+     * Stores the phone calls of each customer, and empties the batch for the next.
+     *
+     * @param batch phone calls by customer
+     * @throws IOException if the phone calls cannot be written to the journal
+     */
+    private void storeAll(Map<String, List<PhoneCall>> batch) throws IOException {
+        for (Map.Entry<String, List<PhoneCall>> entry : batch.entrySet())
+            store(entry.getKey(), entry.getValue());
+        batch.clear();
+    }
+
+    /**
+     * Returns the phone bill of the given customer, creating an empty one, and
+     * listing the customer by name, if there is none yet.
+     *
+     * @param customer some name
+     * @return the customer's phone bill
+     */
+    private PhoneBill phoneBillOf(String customer) {
+        return this.data.computeIfAbsent(customer, name -> {
+            this.customers.add(name);
+            return new PhoneBill(name);
+        });
+    }
+
+    /**
+     * Adds phone calls to the phone bill of the given customer. If there is a
+     * journal, the phone calls are written to it first, and only added to the
+     * phone bill once they are on disk. So no reader sees a phone call that
+     * could be lost, and a request that fails adds nothing to the phone bill
+     * for a retry to add twice. The records of a request that fails may still
+     * reach the disk along with a later request's, however, so a phone call
+     * that was retried may be found twice once the journal is replayed.
+     * No snapshot is taken in the meantime.
+     *
+     * @param customer   some name
+     * @param phoneCalls the phone calls to be added
+     * @throws IOException some IO error
+     */
+    private void store(String customer, List<PhoneCall> phoneCalls) throws IOException {
+        PhoneBill phoneBill = phoneBillOf(customer);
+        if (this.journal == null) {
+            phoneBill.addPhoneCalls(phoneCalls);
+            this.phoneNumbers.add(phoneBill.getCustomer(), phoneCalls);
+            this.metrics.addedPhoneCalls(phoneCalls.size());
+            return;
+        }
+        this.storing.readLock().lock();
+        try {
+            this.journal.sync(this.journal.write(customer, phoneCalls));
+            phoneBill.addPhoneCalls(phoneCalls);
+            this.phoneNumbers.add(phoneBill.getCustomer(), phoneCalls);
+        } finally {
+            this.storing.readLock().unlock();
+        }
+        this.metrics.addedPhoneCalls(phoneCalls.size());
+    }
+
     /**
      * Writes an error message about a missing parameter to the HTTP response.
      * The text of the error message is created by {@link Messages#missingRequiredParameter(String)}
@@ -98,34 +611,228 @@ public class PhoneBillServlet extends HttpServlet {
      * @throws IOException some IO error
      */
     private void missingRequiredParameter(HttpServletResponse response, String parameterName) throws IOException {
-        pw = response.getWriter();
+        PrintWriter pw = response.getWriter();
         pw.println(Messages.missingRequiredParameter(parameterName));
 
         pw.flush();
         response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
     }
 
+    /**
+     * Writes an error message about two parameters that were not given the same
+     * number of times to the HTTP response. The text of the error message is
+     * created by {@link Messages#mismatchedParameters(String, String)}
+     *
+     * @param response       data returned to the client
+     * @param parameterName  some parameter
+     * @param parameterName2 some other parameter
+     * @throws IOException some IO error
+     */
+    private void mismatchedParameters(HttpServletResponse response, String parameterName, String parameterName2)
+            throws IOException {
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.mismatchedParameters(parameterName, parameterName2));
+
+        pw.flush();
+        response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+    }
+
+    /**
+     * Writes an error message about a parameter whose value cannot be used to the
+     * HTTP response. The text of the error message is created by
+     * {@link Messages#invalidParameter(String, String)}
+     *
+     * @param response      data returned to the client
+     * @param parameterName some parameter
+     * @param value         the value that was given
+     * @throws IOException some IO error
+     */
+    private void invalidParameter(HttpServletResponse response, String parameterName, String value)
+            throws IOException {
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.invalidParameter(parameterName, value));
+
+        pw.flush();
+        response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+    }
+
     /**
      * Writes the phone bill of the given customer to the HTTP response.
      * <p>
      * The text of the message is formatted with {@link Messages#getMappingCount(int)}
-     * and {@link Messages#formatCustomerPhoneBillPair(String, PhoneBill)}
+     * and {@link Messages#writeCustomerPhoneBillPair(Appendable, String, PhoneBill)}
+     * <p>
+     * The response carries an ETag naming the version of the phone bill. If the
+     * request's "If-None-Match" header names the same version, only the status
+     * 304 (Not Modified) is sent. Otherwise, the rendered phone bill is reused
+     * if it has not changed since it was last requested.
+     * <p>
+     * The ETag and the phone bill are both taken from a single snapshot of the
+     * phone bill, so that they agree, and phone calls may go on being added to
+     * it while it is written to a slow client.
      *
      * @param customer some name
+     * @param request  data from the client
      * @param response data returned to the client
      * @throws IOException some IO error
      */
-    private void writePhoneBill(String customer, HttpServletResponse response) throws IOException {
+    private void writePhoneBill(String customer, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
         PhoneBill phoneBill = this.data.get(customer);
+        if (phoneBill == null) {
+            writeEmptyPhoneBill(customer, response);
+            return;
+        }
+
+        PhoneBill snapshot = phoneBill.getSnapshot();
+        long version = snapshot.getVersion();
+        String eTag = String.format("\"%s-%d\"", this.instanceTag, version);
+        response.setHeader("ETag", eTag);
+        if (matches(request.getHeader("If-None-Match"), eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.getMappingCount(1));
+        if (this.renderedPhoneBills.isCacheable(snapshot)) {
+            String rendered = this.renderedPhoneBills.get(customer, version);
+            if (rendered == null) {
+                rendered = Messages.formatCustomerPhoneBillPair(customer, snapshot);
+                this.renderedPhoneBills.put(customer, version, rendered);
+            }
+            pw.println(rendered);
+        } else {
+            Messages.writeCustomerPhoneBillPair(pw, customer, snapshot);
+            pw.println();
+        }
+        pw.flush();
+    }
+
+    /**
+     * Writes a summary of the given customer's usage to the HTTP response. It is
+     * read from a single snapshot of the phone bill without locking it. The
+     * totals are kept as phone calls are added, and the calls per callee are
+     * counted once for each version of the phone bill. The text of the message is formatted
+     * with {@link Messages#formatUsage(String, PhoneBill)}
+     *
+     * @param customer some name
+     * @param response data returned to the client
+     * @throws IOException some IO error
+     */
+    private void writeUsage(String customer, HttpServletResponse response) throws IOException {
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.formatUsage(customer, this.data.get(customer)));
 
-        pw = response.getWriter();
-        pw.println(Messages.getMappingCount(phoneBill != null ? 1 : 0));
-        pw.println(Messages.formatCustomerPhoneBillPair(customer, phoneBill));
+        pw.flush();
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Writes every phone call that the given phone number was involved in, as
+     * either the caller or the callee, to the HTTP response, each preceded by
+     * the customer whose phone bill holds it. The phone calls are found in the
+     * {@link PhoneNumberIndex}, so the time taken depends only on how many there are.
+     *
+     * @param phoneNumber some phone number
+     * @param response    data returned to the client
+     * @throws IOException some IO error
+     */
+    private void writeCallsInvolving(String phoneNumber, HttpServletResponse response) throws IOException {
+        List<PhoneNumberIndex.Reference> found = this.phoneNumbers.find(phoneNumber);
+        PrintWriter pw = response.getWriter();
+        if (found.isEmpty()) {
+            pw.println(Messages.noCallsInvolving(phoneNumber));
+        } else {
+            pw.println(Messages.searchPhoneNumberForCalls(phoneNumber));
+            for (PhoneNumberIndex.Reference reference : found) {
+                pw.append("  ").append(reference.customer).append(':');
+                reference.phoneCall.prettyPrint(pw);
+            }
+        }
 
         pw.flush();
         response.setStatus(HttpServletResponse.SC_OK);
     }
 
+    /**
+     * Writes one page of the phone bill of the given customer to the HTTP response,
+     * followed by the cursor of the next page if there is one. The text of the
+     * message is formatted with {@link Messages#getMappingCount(int)} and
+     * {@link Messages#nextPage(String)}
+     *
+     * @param customer some name
+     * @param limit    the most phone calls to write
+     * @param after    the cursor that ended the previous page, or <code>null</code>
+     * @param response data returned to the client
+     * @throws IOException some IO error
+     */
+    private void writePhoneBillPage(String customer, int limit, String after, HttpServletResponse response)
+            throws IOException {
+        PhoneBill phoneBill = this.data.get(customer);
+        if (phoneBill == null) {
+            writeEmptyPhoneBill(customer, response);
+            return;
+        }
+
+        StringBuilder page = new StringBuilder();
+        String next;
+        try {
+            next = phoneBill.prettyPrint(page, after, limit);
+        } catch (IllegalArgumentException ex) {
+            invalidParameter(response, "after", after);
+            return;
+        }
+
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.getMappingCount(1));
+        pw.append("  ").append(customer).append("'s ").append(page);
+        pw.println();
+        if (next != null)
+            pw.println(Messages.nextPage(next));
+
+        pw.flush();
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Writes to the HTTP response that the given customer has no phone bill.
+     *
+     * @param customer some name
+     * @param response data returned to the client
+     * @throws IOException some IO error
+     */
+    private void writeEmptyPhoneBill(String customer, HttpServletResponse response) throws IOException {
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.getMappingCount(0));
+        Messages.writeCustomerPhoneBillPair(pw, customer, null);
+        pw.println();
+
+        pw.flush();
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Determines whether or not an "If-None-Match" header names the given ETag.
+     *
+     * @param ifNoneMatch the value of the header, which may be <code>null</code>
+     * @param eTag        some ETag
+     * @return True if the header names the ETag or is "*", otherwise false
+     */
+    private boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null)
+            return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            if (candidate.equals(eTag) || candidate.equals("*"))
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Prints out all phone calls belonging to the specified customer
      * that began between some time between the two specified times.
@@ -138,23 +845,17 @@ public class PhoneBillServlet extends HttpServlet {
      */
     private void writeTimeSpecifiedPhoneBill(String customer, String startTime, String endTime, HttpServletResponse response)
             throws IOException {
-        PhoneCall call;
-        int after;
-        int before;
+        long after = PhoneCall.getEpochMinutes(startTime);
+        long before = PhoneCall.getEpochMinutes(endTime);
         boolean atLeastOneExists = false;
-        pw = response.getWriter();
-        for (Map.Entry<String, PhoneBill> entry : this.data.entrySet()) {
-            if (entry.getKey().equals(customer)) {
-                pw.println(Messages.searchPhoneBillForCalls(entry.getKey()));
-                for (Object phoneCall : entry.getValue().getPhoneCalls()) {
-                    call = (PhoneCall) phoneCall;
-                    after = call.compareTime(call.getStartTimeString(), call.getShortDateFormat(startTime));
-                    before = call.compareTime(call.getStartTimeString(), call.getShortDateFormat(endTime));
-                    if ((after == 0 || after == 1) && (before == 0 || before == -1)) {
-                        pw.println(call.prettyPrint());
-                        atLeastOneExists = true;
-                    }
-                }
+        PrintWriter pw = response.getWriter();
+        PhoneBill phoneBill = this.data.get(customer);
+        if (phoneBill != null) {
+            pw.println(Messages.searchPhoneBillForCalls(customer));
+            for (PhoneCall call : phoneBill.getPhoneCallsBetween(after, before)) {
+                call.prettyPrint(pw);
+                pw.println();
+                atLeastOneExists = true;
             }
         }
         if (!atLeastOneExists)
@@ -164,25 +865,97 @@ public class PhoneBillServlet extends HttpServlet {
     }
 
     /**
-     * Writes all of the customer/phone bill pairs to the HTTP response.
+     * Writes phone calls to the HTTP response in the form of {@link PhoneCallCodec}:
+     * those of the given customer, those of the given customer that began between
+     * the two given times, or, if no customer is given, those of every customer in
+     * order by name. Each customer's phone calls are ordered by their start times.
+     *
+     * @param customer  some name, or <code>null</code> for every customer
+     * @param startTime the lower bound time, or <code>null</code>
+     * @param endTime   the upper bound time, or <code>null</code>
+     * @param response  data returned to the client
+     * @throws IOException some IO error
+     */
+    private void writeEncodedPhoneCalls(String customer, String startTime, String endTime,
+                                        HttpServletResponse response) throws IOException {
+        response.setContentType(PhoneCallCodec.CONTENT_TYPE);
+        response.setStatus(HttpServletResponse.SC_OK);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(response.getOutputStream()));
+
+        if (customer != null && startTime != null && endTime != null) {
+            PhoneBill phoneBill = this.data.get(customer);
+            if (phoneBill != null) {
+                long after = PhoneCall.getEpochMinutes(startTime);
+                long before = PhoneCall.getEpochMinutes(endTime);
+                for (PhoneCall phoneCall : phoneBill.getPhoneCallsBetween(after, before))
+                    PhoneCallCodec.write(out, customer, phoneCall);
+            }
+        } else {
+            for (String name : customer != null ? Collections.singleton(customer) : this.customers) {
+                PhoneBill phoneBill = this.data.get(name);
+                if (phoneBill == null)
+                    continue;
+                for (Object phoneCall : phoneBill.getSnapshot().getPhoneCalls())
+                    PhoneCallCodec.write(out, name, (PhoneCall) phoneCall);
+            }
+        }
+        PhoneCallCodec.writeEnd(out);
+        out.flush();
+    }
+
+    /**
+     * Writes the customer/phone bill pairs to the HTTP response, in order by the
+     * customers' names. At most <code>limit</code> pairs are written, starting
+     * with the first customer whose name comes after the given cursor, and the
+     * cursor of the next page follows them if there are more. The count at the
+     * top is of the pairs on this page, which are picked out before any is written.
      * <p>
      * The text of the message is formatted with
-     * {@link Messages#formatCustomerPhoneBillPair(String, PhoneBill)}
+     * {@link Messages#writeCustomerPhoneBillPair(Appendable, String, PhoneBill)},
+     * which writes each phone bill straight to the response, and with
+     * {@link Messages#nextPage(String)}
      *
+     * @param limit    the most customers to write
+     * @param after    the name that ended the previous page, or <code>null</code>
      * @param response data returned to the client
      * @throws IOException some IO error
      */
-    private void writeAllMappings(HttpServletResponse response) throws IOException {
-        pw = response.getWriter();
-        pw.println(Messages.getMappingCount(data.size()));
+    private void writeAllMappings(int limit, String after, HttpServletResponse response) throws IOException {
+        List<String> page = new ArrayList<>();
+        boolean more = false;
+        for (String customer : after == null ? this.customers : this.customers.tailSet(after, false)) {
+            if (this.data.get(customer) == null)
+                continue;
+            if (page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.add(customer);
+        }
 
-        this.data.entrySet().stream().filter(entry -> entry.getValue() != null).forEach(entry ->
-                pw.println(Messages.formatCustomerPhoneBillPair(entry.getKey(), entry.getValue())));
+        PrintWriter pw = response.getWriter();
+        pw.println(Messages.getMappingCount(page.size()));
+        for (String customer : page) {
+            Messages.writeCustomerPhoneBillPair(pw, customer, this.data.get(customer));
+            pw.println();
+        }
+        if (more)
+            pw.println(Messages.nextPage(page.get(page.size() - 1)));
 
         pw.flush();
         response.setStatus(HttpServletResponse.SC_OK);
     }
 
+    /**
+     * Returns the phone bill of the given customer.
+     *
+     * @param customer some name
+     * @return the customer's phone bill, or <code>null</code> if there is none
+     */
+    PhoneBill getPhoneBill(String customer) {
+        return this.data.get(customer);
+    }
+
     /**
      * Returns the value of the HTTP request parameter with the given name.
      *
@@ -199,4 +972,23 @@ public class PhoneBillServlet extends HttpServlet {
             return value;
         }
     }
+
+    /**
+     * Returns all of the values of the HTTP request parameter with the given name.
+     *
+     * @param name    some name
+     * @param request data from the client
+     * @return <code>null</code> if the parameter is not present, or if any of
+     * its values are the empty string
+     */
+    private String[] getParameterValues(String name, HttpServletRequest request) {
+        String[] values = request.getParameterValues(name);
+        if (values == null || values.length == 0)
+            return null;
+        for (String value : values) {
+            if (value == null || "".equals(value))
+                return null;
+        }
+        return values;
+    }
 }
@@ -0,0 +1,103 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Holds every customer's phone bill, partitioned into shards by a hash of
+ * the customer's name. Each shard is a concurrent map, so looking up a
+ * phone bill never locks, and creating one locks only the part of its
+ * shard's map that the customer's name falls in. The shards themselves
+ * hold no locks: what keeps writers apart is the lock of each
+ * {@link PhoneBill}, which phone calls are added under, so writers only
+ * contend when they add to the same customer's phone bill.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneBillShards {
+
+    /**
+     * The number of shards used when none is configured: a few per processor,
+     * so that even a skewed spread of customers keeps every processor busy.
+     */
+    static final int DEFAULT_SHARD_COUNT = 4 * Runtime.getRuntime().availableProcessors();
+
+    private final Shard[] shards;
+
+    /**
+     * The phone bills of the customers whose names hash to a single shard.
+     */
+    private static class Shard {
+        private final Map<String, PhoneBill> phoneBills = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param shardCount the number of shards to partition customers across
+     */
+    PhoneBillShards(int shardCount) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("There must be at least one shard");
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; ++i)
+            this.shards[i] = new Shard();
+    }
+
+    /**
+     * @return the number of shards that customers are partitioned across
+     */
+    int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * @param customer some name
+     * @return the customer's phone bill, or <code>null</code> if there is none
+     */
+    PhoneBill get(String customer) {
+        return shardOf(customer).phoneBills.get(customer);
+    }
+
+    /**
+     * Returns the phone bill of the given customer, creating one if there is
+     * none yet. The phone bill is created at most once, however many threads
+     * ask for it at the same time.
+     *
+     * @param customer     some name
+     * @param newPhoneBill creates the customer's phone bill, if need be
+     * @return the customer's phone bill
+     */
+    PhoneBill computeIfAbsent(String customer, Function<String, PhoneBill> newPhoneBill) {
+        Map<String, PhoneBill> phoneBills = shardOf(customer).phoneBills;
+        PhoneBill phoneBill = phoneBills.get(customer);
+        return phoneBill != null ? phoneBill : phoneBills.computeIfAbsent(customer, newPhoneBill);
+    }
+
+    /**
+     * @return the number of customers with phone bills
+     */
+    int size() {
+        int size = 0;
+        for (Shard shard : this.shards)
+            size += shard.phoneBills.size();
+        return size;
+    }
+
+    /**
+     * @return a copy of every phone bill, taken one shard at a time, in no particular order
+     */
+    List<PhoneBill> values() {
+        List<PhoneBill> values = new ArrayList<>();
+        for (Shard shard : this.shards)
+            values.addAll(shard.phoneBills.values());
+        return values;
+    }
+
+    private Shard shardOf(String customer) {
+        int hash = customer.hashCode();
+        return this.shards[Math.floorMod(hash ^ (hash >>> 16), this.shards.length)];
+    }
+}
@@ -0,0 +1,177 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads and writes a compact binary copy of every phone bill on the server.
+ * <p>
+ * A snapshot begins with a magic number and the position in the
+ * {@link PhoneBillJournal} that it was taken at, which is where replaying the
+ * journal resumes once the snapshot is loaded. These are followed by one
+ * section per phone bill: a marker byte, the customer's name, the number of calls, and then
+ * each call's caller and callee numbers and start and end times in minutes
+ * since the epoch. A zero marker byte ends the snapshot. Names and numbers
+ * are written as a two-byte length followed by their UTF-8 bytes.
+ * <p>
+ * Snapshots are read through a memory-mapped file, so that loading one costs
+ * little more than reading its bytes.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneBillSnapshot {
+
+    private static final int MAGIC = 0x50424C32;
+    private static final byte PHONE_BILL = 1;
+    private static final byte END = 0;
+
+    /**
+     * Writes a snapshot of the given phone bills. The snapshot is written to a
+     * temporary file first, which then replaces the given file, so that a crash
+     * part way through never leaves a partial snapshot behind. Each phone bill
+     * is written as it was at a single point in time, without locking it.
+     *
+     * @param file            where the snapshot is kept
+     * @param journalPosition the position in the journal just past the last
+     *                        record that the phone bills hold, or 0 if there
+     *                        is no journal
+     * @param phoneBills      the phone bills to be written
+     * @return the number of phone calls written
+     * @throws IOException some IO error, or a name or phone number too long to be
+     *                     written, in which case the previous snapshot is kept
+     */
+    static long write(File file, long journalPosition, Collection<PhoneBill> phoneBills) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        long count = 0;
+        try (FileOutputStream fileOut = new FileOutputStream(temporary)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeLong(journalPosition);
+            for (PhoneBill phoneBill : phoneBills) {
+                Collection calls = phoneBill.getSnapshot().getPhoneCalls();
+                out.writeByte(PHONE_BILL);
+                writeString(out, phoneBill.getCustomer());
+                out.writeInt(calls.size());
+                for (Object call : calls) {
+                    PhoneCall phoneCall = (PhoneCall) call;
+                    writeString(out, phoneCall.getCaller());
+                    writeString(out, phoneCall.getCallee());
+                    out.writeLong(phoneCall.getStartMinutes());
+                    out.writeLong(phoneCall.getEndMinutes());
+                }
+                count += calls.size();
+            }
+            out.writeByte(END);
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException ex) {
+            Files.deleteIfExists(temporary.toPath());
+            throw ex;
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Reads a snapshot, handing each customer's phone calls to the given consumer
+     * in the order in which they were written. Nothing is read if there is no
+     * snapshot yet.
+     *
+     * @param file     where the snapshot is kept
+     * @param readInto receives each customer's name and phone calls
+     * @return the number of phone calls read
+     * @throws IOException if the snapshot is malformed or cannot be read
+     */
+    static long read(File file, BiConsumer<String, List<PhoneCall>> readInto) throws IOException {
+        if (!file.exists())
+            return 0;
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Snapshot " + file + " is too large to be mapped");
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                if (in.getInt() != MAGIC)
+                    throw new IOException(file + " is not a phone bill snapshot");
+                in.getLong();
+                while (in.get() == PHONE_BILL) {
+                    String customer = readString(in);
+                    int size = in.getInt();
+                    List<PhoneCall> phoneCalls = new ArrayList<>(size);
+                    for (int i = 0; i < size; ++i) {
+                        String caller = readString(in);
+                        String callee = readString(in);
+                        phoneCalls.add(new PhoneCall(caller, callee, in.getLong(), in.getLong()));
+                    }
+                    readInto.accept(customer, phoneCalls);
+                    count += size;
+                }
+            } catch (RuntimeException ex) {
+                throw new IOException("Snapshot " + file + " is malformed", ex);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the position in the journal that a snapshot was taken at. The
+     * records from that position on are those that the snapshot does not hold.
+     *
+     * @param file where the snapshot is kept
+     * @return the position written with the snapshot, or 0 if there is no
+     * snapshot yet
+     * @throws IOException if the snapshot is malformed or cannot be read
+     */
+    static long readJournalPosition(File file) throws IOException {
+        if (!file.exists())
+            return 0;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a phone bill snapshot");
+            return in.readLong();
+        } catch (EOFException ex) {
+            throw new IOException("Snapshot " + file + " is malformed", ex);
+        }
+    }
+
+    /**
+     * Writes some text as a two-byte length followed by its UTF-8 bytes. Text
+     * of more than 65535 bytes is refused rather than written with a length
+     * that would be cut short.
+     */
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF)
+            throw new IOException("Text of " + bytes.length + " bytes is too long for a snapshot");
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads some text written by {@link #writeString(DataOutputStream, String)}.
+     */
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
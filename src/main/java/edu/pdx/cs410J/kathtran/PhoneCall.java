@@ -2,10 +2,13 @@ package edu.pdx.cs410J.kathtran;
 
 import edu.pdx.cs410J.AbstractPhoneCall;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
+import java.util.Locale;
 
 /**
  * Implements the abstract methods that can be found within
@@ -18,13 +21,29 @@ import java.util.Date;
  * details of the phone call.
  * <p>
  * v4.0 UPDATE: An additional constructor has been implemented to
- * parse a single String to create a new PhoneCall object.
+ * parse a single String to create a new PhoneCall object. Start and
+ * end times are now parsed once upon construction and kept as minutes
+ * since the epoch. Phone calls may be pretty printed directly to any
+ * {@link Appendable}. Phone numbers and times are read by the
+ * {@link PhoneCallParser}, and malformed ones are reported by throwing
+ * an {@link IllegalArgumentException} rather than exiting.
  *
  * @author Kathleen Tran
  * @version 4.0
  */
 class PhoneCall extends AbstractPhoneCall implements Comparable {
 
+    /**
+     * The forms in which dates and times are written. They are fixed, rather
+     * than taken from the default locale, because the text of a phone call is
+     * sent to the server and read back by the {@link PhoneCallParser}, and the
+     * short form of the default locale differs between JDKs (newer ones put a
+     * comma after the date and a narrow space before AM/PM).
+     */
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("M/d/yy", Locale.US);
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("h:mm a", Locale.US);
+    private static final DateTimeFormatter DATE_AND_TIME = DateTimeFormatter.ofPattern("M/d/yy h:mm a", Locale.US);
+
     /**
      * The phone number of the caller
      */
@@ -36,14 +55,14 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
     private String calleeNumber;
 
     /**
-     * The time at which the call began
+     * The time at which the call began, in minutes since the epoch
      */
-    private String startTime;
+    private long startTime;
 
     /**
-     * The time at which the call ended
+     * The time at which the call ended, in minutes since the epoch
      */
-    private String endTime;
+    private long endTime;
 
     /**
      * Default constructor.
@@ -51,12 +70,12 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
     public PhoneCall() {
         this.callerNumber = null;
         this.calleeNumber = null;
-        this.startTime = null;
-        this.endTime = null;
     }
 
     /**
      * Constructor that specifies all of the fields existent within a call record.
+     * The start and end times are parsed once here so that sorting, searching,
+     * and duration calculations never need to parse them again.
      *
      * @param callerNumber the number of the person who called
      * @param calleeNumber the number of the person who was called
@@ -64,6 +83,21 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
      * @param endTime      the time at which the call ended
      */
     public PhoneCall(String callerNumber, String calleeNumber, String startTime, String endTime) {
+        this.callerNumber = callerNumber;
+        this.calleeNumber = calleeNumber;
+        this.startTime = getEpochMinutes(startTime);
+        this.endTime = getEpochMinutes(endTime);
+    }
+
+    /**
+     * Constructor for a call record whose times have already been parsed.
+     *
+     * @param callerNumber the number of the person who called
+     * @param calleeNumber the number of the person who was called
+     * @param startTime    the time at which the call began, in minutes since the epoch
+     * @param endTime      the time at which the call ended, in minutes since the epoch
+     */
+    PhoneCall(String callerNumber, String calleeNumber, long startTime, long endTime) {
         this.callerNumber = callerNumber;
         this.calleeNumber = calleeNumber;
         this.startTime = startTime;
@@ -74,13 +108,44 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
      * Parses the output from the toString method of the AbstractPhoneCall class.
      *
      * @param call some string detailing data from the phone call
+     * @throws IllegalArgumentException if the string is not a phone call
      */
     public PhoneCall(String call) {
-        String[] split = call.split(" ");
-        callerNumber = split[3];
-        calleeNumber = split[5];
-        startTime = split[7] + " " + split[8] + " " + split[9];
-        endTime = split[11] + " " + split[12] + " " + split[13];
+        PhoneCall parsed = parse(call);
+        if (parsed == null)
+            throw new IllegalArgumentException("Malformed phone call: " + call);
+        this.callerNumber = parsed.callerNumber;
+        this.calleeNumber = parsed.calleeNumber;
+        this.startTime = parsed.startTime;
+        this.endTime = parsed.endTime;
+    }
+
+    /**
+     * Parses the output from the toString method of the AbstractPhoneCall class,
+     * of the form "Phone call from <i>caller</i> to <i>callee</i> from
+     * <i>start</i> to <i>end</i>".
+     *
+     * @param call some string detailing data from the phone call
+     * @return the phone call, or <code>null</code> if the string is not a phone
+     * call with valid phone numbers and times
+     */
+    static PhoneCall parse(String call) {
+        if (call == null || !call.startsWith("Phone call from "))
+            return null;
+        int caller = "Phone call from ".length();
+        int callee = call.indexOf(" to ", caller) + 4;
+        int start = call.indexOf(" from ", callee) + 6;
+        int end = call.indexOf(" to ", start) + 4;
+        if (callee < 4 || start < 6 || end < 4
+                || PhoneCallParser.parsePhoneNumber(call, caller, callee - 4) < 0
+                || PhoneCallParser.parsePhoneNumber(call, callee, start - 6) < 0)
+            return null;
+        long startTime = PhoneCallParser.parseDateTime(call, start, end - 4);
+        long endTime = PhoneCallParser.parseDateTime(call, end, call.length());
+        if (startTime == PhoneCallParser.INVALID || endTime == PhoneCallParser.INVALID)
+            return null;
+        return new PhoneCall(call.substring(caller, callee - 4), call.substring(callee, start - 6),
+                startTime, endTime);
     }
 
     /**
@@ -108,6 +173,22 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
         return dateFormatter(this.startTime);
     }
 
+    /**
+     * @return the time that this phone call was originated, in minutes
+     * since the epoch
+     */
+    public long getStartMinutes() {
+        return this.startTime;
+    }
+
+    /**
+     * @return the time that this phone call was completed, in minutes
+     * since the epoch
+     */
+    public long getEndMinutes() {
+        return this.endTime;
+    }
+
     /**
      * @return a textual representation of the time that this phone call
      * was completed
@@ -122,19 +203,11 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
      * where the date remains formatted as MM/dd/yyyy, while the time is
      * in a 12-hour format and includes AM/PM.
      *
-     * @param dateToFormat some date and time
-     * @return date and time formatted using java.text.DateFormat.SHORT
+     * @param minutes some date and time, in minutes since the epoch
+     * @return date and time formatted using the short US form M/d/yy h:mm a
      */
-    private String dateFormatter(String dateToFormat) {
-        Date date = null;
-        DateFormat parseDate = new SimpleDateFormat("MM/dd/yyyy hh:mm a");
-        try {
-            date = parseDate.parse(dateToFormat);
-        } catch (ParseException ex) {
-            System.err.println("Something went wrong whilst attempting to parse the date");
-            System.exit(1);
-        }
-        return DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT).format(date);
+    private String dateFormatter(long minutes) {
+        return format(DATE_AND_TIME, minutes);
     }
 
     /**
@@ -143,10 +216,7 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
      * @return the duration of the call, in minutes.
      */
     public long getCallDuration() {
-        Date start = getDateObject(startTime);
-        Date end = getDateObject(endTime);
-        long duration = end.getTime() - start.getTime();
-        return (duration / (60 * 1000));
+        return this.endTime - this.startTime;
     }
 
     /**
@@ -165,16 +235,9 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
     public int compareTo(Object object) throws NullPointerException, ClassCastException {
         PhoneCall comparison = (PhoneCall) object;
 
-        Date thisDate = getDateObject(this.getStartTimeString());
-        Date thatDate = getDateObject(comparison.getStartTimeString());
-
-        if (thisDate.equals(thatDate)) {
-            int numberCompareResult = comparePhoneNumbers(comparison.getCaller());
-            if (numberCompareResult == 0) {
-                return 0;
-            } else
-                return numberCompareResult;
-        } else if (thisDate.before(thatDate))
+        if (this.startTime == comparison.startTime)
+            return comparePhoneNumbers(comparison.getCaller());
+        else if (this.startTime < comparison.startTime)
             return -1;
         else
             return 1;
@@ -191,16 +254,7 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
      * @throws NullPointerException if the specified thatTime is null
      */
     public int compareTime(String thisTime, String thatTime) throws NullPointerException {
-        Date thisDate = getDateObject(thisTime);
-        Date thatDate = getDateObject(thatTime);
-
-        if (thisDate.equals(thatDate))
-            return 0;
-        if (thisDate.before(thatDate))
-            return -1;
-        if (thisDate.after(thatDate))
-            return 1;
-        return 2;
+        return Long.compare(getEpochMinutes(thisTime), getEpochMinutes(thatTime));
     }
 
     /**
@@ -208,35 +262,46 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
      *
      * @param dateToGet some date and time
      * @return a Date object of the provided date and time
+     * @throws IllegalArgumentException if the date and time are malformed
      */
     public Date getDateObject(String dateToGet) {
-        Date date = null;
-        DateFormat parseDate = new SimpleDateFormat("MM/dd/yyyy hh:mm a");
-        try {
-            date = parseDate.parse(dateToGet);
-        } catch (ParseException ex) {
-            System.err.println("Something went wrong whilst attempting to parse the date");
-            System.exit(1);
-        }
-        return date;
+        return toDate(getEpochMinutes(dateToGet));
     }
 
     /**
-     * Format some date into the SHORT format and return it as a <code>String</code>.
+     * Converts some given date and time into minutes since the epoch. Both
+     * four-digit years (as entered by the user) and two-digit years (as
+     * produced by the short US form M/d/yy h:mm a) are accepted.
+     *
+     * @param dateToGet some date and time
+     * @return the provided date and time, in minutes since the epoch
+     * @throws IllegalArgumentException if the date and time are malformed
+     */
+    static long getEpochMinutes(String dateToGet) {
+        long minutes = PhoneCallParser.parseDateTime(dateToGet);
+        if (minutes == PhoneCallParser.INVALID)
+            throw new IllegalArgumentException("Malformed date and time: " + dateToGet);
+        return minutes;
+    }
+
+    /**
+     * Creates a date object of some time given in minutes since the epoch.
+     *
+     * @param minutes some date and time, in minutes since the epoch
+     * @return a Date object of the provided date and time
+     */
+    private static Date toDate(long minutes) {
+        return new Date(minutes * 60 * 1000);
+    }
+
+    /**
+     * Format some date into the short US form and return it as a <code>String</code>.
      *
      * @param dateToFormat some date
-     * @return date in SHORT format
+     * @return date in the short US form
      */
     public String getShortDateFormat(String dateToFormat) {
-        Date date = null;
-        DateFormat parseDate = new SimpleDateFormat("MM/dd/yyyy hh:mm a");
-        try {
-            date = parseDate.parse(dateToFormat);
-        } catch (ParseException ex) {
-            System.err.println("Something went wrong whilst attempting to parse the date");
-            System.exit(1);
-        }
-        return DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT).format(date);
+        return dateFormatter(getEpochMinutes(dateToFormat));
     }
 
     /**
@@ -249,23 +314,11 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
      * number is less than, equal to, or greater than the specified object's caller number.
      */
     private int comparePhoneNumbers(String phoneNumberToBeCompared) {
-        try {
-            String thisCaller = this.callerNumber.replaceAll("-", "");
-            String thatCaller = phoneNumberToBeCompared.replaceAll("-", "");
-            Long thisNumber = Long.parseLong(thisCaller);
-            Long thatNumber = Long.parseLong(thatCaller);
-
-            if (thisNumber < thatNumber)
-                return -1;
-            else if (thisNumber > thatNumber)
-                return 1;
-            else
-                return 0;
-        } catch (NumberFormatException ex) {
-            System.err.println("Something went wrong whilst attempting to parse the phone numbers");
-            System.exit(1);
-        }
-        return 1;
+        long thisNumber = PhoneCallParser.parsePhoneNumber(this.callerNumber);
+        long thatNumber = PhoneCallParser.parsePhoneNumber(phoneNumberToBeCompared);
+        if (thisNumber < 0 || thatNumber < 0)
+            return this.callerNumber.compareTo(phoneNumberToBeCompared);
+        return Long.compare(thisNumber, thatNumber);
     }
 
     /**
@@ -275,60 +328,68 @@ class PhoneCall extends AbstractPhoneCall implements Comparable {
      * @return aesthetically pleasing phone call description
      */
     public String prettyPrint() {
-        boolean displayOneDate = false;
-        if (getJustDate(this.startTime).equals(getJustDate(this.endTime)))
-            displayOneDate = true;
-        String call = "\n  " + getJustDate(this.startTime);
-        call += "\t";
-        call += this.callerNumber + "\t" + this.calleeNumber + "\t" + getJustTime(this.startTime);
-        call += "\t";
-        if (getJustTime(this.startTime).length() == 7)
-            call += "\t";
-        call += getJustTime(this.endTime);
-        call += "\t";
-        if (getJustTime(this.startTime).length() == 7)
-            call += "\t";
-        call += getCallDuration() + "\n";
-        if (!displayOneDate)
-            call += "  " + getJustDate(this.endTime) + "\n";
-        return call;
+        StringBuilder call = new StringBuilder();
+        try {
+            prettyPrint(call);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return call.toString();
+    }
+
+    /**
+     * Writes all of the data associated with the phone call, nicely
+     * formatted, to some destination.
+     *
+     * @param out where the phone call description is written
+     * @throws IOException some IO error
+     */
+    public void prettyPrint(Appendable out) throws IOException {
+        String startDate = getJustDate(this.startTime);
+        String endDate = getJustDate(this.endTime);
+        String startClock = getJustTime(this.startTime);
+        out.append("\n  ").append(startDate).append('\t');
+        out.append(this.callerNumber).append('\t').append(this.calleeNumber).append('\t').append(startClock);
+        out.append('\t');
+        if (startClock.length() == 7)
+            out.append('\t');
+        out.append(getJustTime(this.endTime));
+        out.append('\t');
+        if (startClock.length() == 7)
+            out.append('\t');
+        out.append(String.valueOf(getCallDuration())).append('\n');
+        if (!startDate.equals(endDate))
+            out.append("  ").append(endDate).append('\n');
     }
 
     /**
      * Get the date from some date and time.
      *
-     * @param dateToParse some date and time
+     * @param minutes some date and time, in minutes since the epoch
      * @return the date segment
      */
-    private String getJustDate(String dateToParse) {
-        String[] split = dateToParse.split(" ");
-        Date date = null;
-        DateFormat parseDate = new SimpleDateFormat("MM/dd/yyyy");
-        try {
-            date = parseDate.parse(dateToParse);
-        } catch (ParseException ex) {
-            System.err.println("Something went wrong whilst attempting to parse the date");
-            System.exit(1);
-        }
-        return DateFormat.getDateInstance(DateFormat.SHORT).format(date);
+    private String getJustDate(long minutes) {
+        return format(DATE, minutes);
     }
 
     /**
      * Get the time from some date and time.
      *
-     * @param dateToParse some date and time
+     * @param minutes some date and time, in minutes since the epoch
      * @return the time segment
      */
-    private String getJustTime(String dateToParse) {
-        String[] split = dateToParse.split(" ");
-        Date date = null;
-        DateFormat parseDate = new SimpleDateFormat("hh:mm a");
-        try {
-            date = parseDate.parse(split[1] + " " + split[2]);
-        } catch (ParseException ex) {
-            System.err.println("Something went wrong whilst attempting to parse the time");
-            System.exit(1);
-        }
-        return DateFormat.getTimeInstance(DateFormat.SHORT).format(date);
+    private String getJustTime(long minutes) {
+        return format(TIME, minutes);
+    }
+
+    /**
+     * Formats some date and time in the default time zone.
+     *
+     * @param formatter one of {@link #DATE}, {@link #TIME} and {@link #DATE_AND_TIME}
+     * @param minutes   some date and time, in minutes since the epoch
+     * @return the formatted date and/or time
+     */
+    private static String format(DateTimeFormatter formatter, long minutes) {
+        return formatter.format(Instant.ofEpochSecond(minutes * 60).atZone(ZoneId.systemDefault()));
     }
 }
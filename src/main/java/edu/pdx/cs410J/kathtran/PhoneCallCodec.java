@@ -0,0 +1,94 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.BiConsumer;
+
+/**
+ * Encodes phone calls for the REST API in a compact binary form, as an
+ * alternative to the text of {@link PhoneCall#toString()}. The client asks
+ * for this form by sending or accepting the {@link #CONTENT_TYPE} media type.
+ * <p>
+ * Each phone call is written as a marker byte, followed by the customer's
+ * name and the caller and callee numbers in modified UTF-8 (as written by
+ * {@link DataOutputStream#writeUTF(String)}), and then the start and end
+ * times in minutes since the epoch. A zero marker byte ends the list, so
+ * that a list cut short can be told apart from a complete one.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneCallCodec {
+
+    /**
+     * The media type of a list of phone calls in this form.
+     */
+    static final String CONTENT_TYPE = "application/x-phonebill-calls";
+
+    private static final byte PHONE_CALL = 1;
+    private static final byte END = 0;
+
+    /**
+     * Determines whether or not a "Content-Type" or "Accept" header names this form.
+     *
+     * @param header the value of the header, which may be <code>null</code>
+     * @return True if the header names {@link #CONTENT_TYPE}, otherwise false
+     */
+    static boolean isNamedBy(String header) {
+        return header != null && header.contains(CONTENT_TYPE);
+    }
+
+    /**
+     * Writes a phone call belonging to the given customer.
+     *
+     * @param out       where the phone call is written
+     * @param customer  some name
+     * @param phoneCall some phone call
+     * @throws IOException some IO error
+     */
+    static void write(DataOutputStream out, String customer, PhoneCall phoneCall) throws IOException {
+        out.writeByte(PHONE_CALL);
+        out.writeUTF(customer);
+        out.writeUTF(phoneCall.getCaller());
+        out.writeUTF(phoneCall.getCallee());
+        out.writeLong(phoneCall.getStartMinutes());
+        out.writeLong(phoneCall.getEndMinutes());
+    }
+
+    /**
+     * Ends a list of phone calls.
+     *
+     * @param out where the phone calls were written
+     * @throws IOException some IO error
+     */
+    static void writeEnd(DataOutputStream out) throws IOException {
+        out.writeByte(END);
+    }
+
+    /**
+     * Reads a list of phone calls, handing each to the given consumer as soon
+     * as it has been read.
+     *
+     * @param in       where the phone calls are read from
+     * @param readInto receives the customer and phone call of each record
+     * @return the number of phone calls read
+     * @throws IOException if the list is malformed, cut short, or cannot be read
+     */
+    static long read(InputStream in, BiConsumer<String, PhoneCall> readInto) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        long count = 0;
+        byte marker;
+        while ((marker = data.readByte()) == PHONE_CALL) {
+            String customer = data.readUTF();
+            String caller = data.readUTF();
+            String callee = data.readUTF();
+            readInto.accept(customer, new PhoneCall(caller, callee, data.readLong(), data.readLong()));
+            count += 1;
+        }
+        if (marker != END)
+            throw new IOException("Unexpected marker " + marker + " after " + count + " phone calls");
+        return count;
+    }
+}
@@ -0,0 +1,304 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.Arrays;
+
+/**
+ * Stores phone call records as parallel arrays of primitives rather than as
+ * {@link PhoneCall} objects. Phone numbers are kept as their identifiers in
+ * the {@link PhoneNumberDictionary}, and start and end times as minutes since
+ * the epoch, so that each record takes 24 bytes. A {@link PhoneCall} is only
+ * created when some record is asked for.
+ * <p>
+ * This class is not thread-safe; {@link PhoneBill} synchronizes changes to it.
+ * A record is never changed in place once it has been added: records are only
+ * added past the end, and records are only reordered into new arrays. So a
+ * {@link #view()} of the records, which shares the arrays, may be read from
+ * any thread, without locking, while more records are added to the columns.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneCallColumns {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final PhoneNumberDictionary numbers;
+    private int[] callers = new int[INITIAL_CAPACITY];
+    private int[] callees = new int[INITIAL_CAPACITY];
+    private long[] startTimes = new long[INITIAL_CAPACITY];
+    private long[] endTimes = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Creates columns whose phone numbers are kept in the shared dictionary.
+     */
+    PhoneCallColumns() {
+        this(PhoneNumberDictionary.SHARED);
+    }
+
+    /**
+     * Creates columns whose phone numbers are kept in the given dictionary.
+     *
+     * @param numbers where the phone numbers are kept
+     */
+    PhoneCallColumns(PhoneNumberDictionary numbers) {
+        this.numbers = numbers;
+    }
+
+    /**
+     * Creates columns that share the given arrays, holding the given number of records.
+     */
+    private PhoneCallColumns(PhoneNumberDictionary numbers, int[] callers, int[] callees, long[] startTimes,
+                             long[] endTimes, int size) {
+        this.numbers = numbers;
+        this.callers = callers;
+        this.callees = callees;
+        this.startTimes = startTimes;
+        this.endTimes = endTimes;
+        this.size = size;
+    }
+
+    /**
+     * Creates a view of the records as they are now, which shares these
+     * columns' arrays and so takes no copying. The view is never changed by
+     * records added to these columns later, and must not itself be added to.
+     *
+     * @return the records held so far
+     */
+    PhoneCallColumns view() {
+        return new PhoneCallColumns(this.numbers, this.callers, this.callees, this.startTimes, this.endTimes,
+                this.size);
+    }
+
+    /**
+     * @return the number of phone call records
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Makes room for at least the given number of phone call records.
+     *
+     * @param capacity some number of records
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > this.callers.length) {
+            int newCapacity = Math.max(capacity, this.callers.length + (this.callers.length >> 1));
+            this.callers = Arrays.copyOf(this.callers, newCapacity);
+            this.callees = Arrays.copyOf(this.callees, newCapacity);
+            this.startTimes = Arrays.copyOf(this.startTimes, newCapacity);
+            this.endTimes = Arrays.copyOf(this.endTimes, newCapacity);
+        }
+    }
+
+    /**
+     * Adds a phone call record to the end of the columns.
+     *
+     * @param phoneCall some phone call
+     */
+    void add(PhoneCall phoneCall) {
+        ensureCapacity(this.size + 1);
+        this.callers[this.size] = this.numbers.encode(phoneCall.getCaller());
+        this.callees[this.size] = this.numbers.encode(phoneCall.getCallee());
+        this.startTimes[this.size] = phoneCall.getStartMinutes();
+        this.endTimes[this.size] = phoneCall.getEndMinutes();
+        this.size += 1;
+    }
+
+    /**
+     * Creates a phone call from the record at the given position.
+     *
+     * @param index the position of some record
+     * @return a phone call holding the record's data
+     */
+    PhoneCall get(int index) {
+        return new PhoneCall(this.numbers.decode(this.callers[index]), this.numbers.decode(this.callees[index]),
+                this.startTimes[index], this.endTimes[index]);
+    }
+
+    /**
+     * @param index the position of some record
+     * @return the phone number of the person who received the call
+     */
+    String getCallee(int index) {
+        return this.numbers.decode(this.callees[index]);
+    }
+
+    /**
+     * @param index the position of some record
+     * @return the identifier of the phone number of the person who received the call
+     */
+    int getCalleeIdentifier(int index) {
+        return this.callees[index];
+    }
+
+    /**
+     * @param identifier the identifier of some phone number in these columns
+     * @return the phone number
+     */
+    String decode(int identifier) {
+        return this.numbers.decode(identifier);
+    }
+
+    /**
+     * @param index the position of some record
+     * @return the time at which the call began, in minutes since the epoch
+     */
+    long getStartTime(int index) {
+        return this.startTimes[index];
+    }
+
+    /**
+     * Compares two records in the same way as {@link PhoneCall#compareTo(Object)}:
+     * by start time, with ties broken by the callers' phone numbers.
+     *
+     * @param i the position of some record
+     * @param j the position of some other record
+     * @return a negative integer, zero, or a positive integer as the first record
+     * is less than, equal to, or greater than the second
+     */
+    int compare(int i, int j) {
+        if (this.startTimes[i] != this.startTimes[j])
+            return this.startTimes[i] < this.startTimes[j] ? -1 : 1;
+        long thisCaller = this.numbers.valueOf(this.callers[i]);
+        long thatCaller = this.numbers.valueOf(this.callers[j]);
+        if (thisCaller >= 0 && thatCaller >= 0)
+            return Long.compare(thisCaller, thatCaller);
+        return get(i).compareTo(get(j));
+    }
+
+    /**
+     * Compares the caller of a record with some phone number in the same way as
+     * {@link #compare(int, int)} compares the callers of two records.
+     *
+     * @param index  the position of some record
+     * @param caller some phone number
+     * @return a negative integer, zero, or a positive integer as the record's caller
+     * is less than, equal to, or greater than the phone number
+     */
+    int compareCaller(int index, String caller) {
+        long thisCaller = this.numbers.valueOf(this.callers[index]);
+        long thatCaller = PhoneCallParser.parsePhoneNumber(caller);
+        if (thisCaller >= 0 && thatCaller >= 0)
+            return Long.compare(thisCaller, thatCaller);
+        return this.numbers.decode(this.callers[index]).compareTo(caller);
+    }
+
+    /**
+     * Sorts a copy of the records with a stable merge sort, using {@link #compare(int, int)}.
+     * Runs that are already in order are not merged, so records that are nearly
+     * in order are sorted in close to linear time. These columns are left as
+     * they are, so they may be sorted while being read from other threads.
+     *
+     * @return new columns holding the same records in order
+     */
+    PhoneCallColumns sorted() {
+        int[] order = new int[this.size];
+        for (int i = 0; i < this.size; ++i)
+            order[i] = i;
+        mergeSort(order, new int[this.size], 0, this.size);
+
+        int[] sortedCallers = new int[this.callers.length];
+        int[] sortedCallees = new int[this.callees.length];
+        long[] sortedStartTimes = new long[this.startTimes.length];
+        long[] sortedEndTimes = new long[this.endTimes.length];
+        for (int i = 0; i < this.size; ++i) {
+            sortedCallers[i] = this.callers[order[i]];
+            sortedCallees[i] = this.callees[order[i]];
+            sortedStartTimes[i] = this.startTimes[order[i]];
+            sortedEndTimes[i] = this.endTimes[order[i]];
+        }
+        return new PhoneCallColumns(this.numbers, sortedCallers, sortedCallees, sortedStartTimes, sortedEndTimes,
+                this.size);
+    }
+
+    /**
+     * Replaces the first records with the same records in another order, as
+     * returned by {@link #sorted()} from a {@link #view()} of these columns.
+     * Records added since the view was taken are kept after them. The arrays
+     * of the reordered records are taken over rather than copied when they
+     * have room for the records added since.
+     *
+     * @param reordered the first records of these columns, in another order
+     */
+    void reorderFirst(PhoneCallColumns reordered) {
+        int first = reordered.size;
+        int[] newCallers = reordered.callers;
+        int[] newCallees = reordered.callees;
+        long[] newStartTimes = reordered.startTimes;
+        long[] newEndTimes = reordered.endTimes;
+        if (newCallers.length < this.size) {
+            newCallers = Arrays.copyOf(newCallers, this.callers.length);
+            newCallees = Arrays.copyOf(newCallees, this.callees.length);
+            newStartTimes = Arrays.copyOf(newStartTimes, this.startTimes.length);
+            newEndTimes = Arrays.copyOf(newEndTimes, this.endTimes.length);
+        }
+        System.arraycopy(this.callers, first, newCallers, first, this.size - first);
+        System.arraycopy(this.callees, first, newCallees, first, this.size - first);
+        System.arraycopy(this.startTimes, first, newStartTimes, first, this.size - first);
+        System.arraycopy(this.endTimes, first, newEndTimes, first, this.size - first);
+        this.callers = newCallers;
+        this.callees = newCallees;
+        this.startTimes = newStartTimes;
+        this.endTimes = newEndTimes;
+    }
+
+    /**
+     * Determines whether or not the records from the given position onwards,
+     * and the record before it, are in order.
+     *
+     * @param from the position of some record
+     * @return True if no record from that position onwards is out of order, otherwise false
+     */
+    boolean isSortedFrom(int from) {
+        for (int i = Math.max(from, 1); i < this.size; ++i) {
+            if (compare(i - 1, i) > 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the positions from <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive) of some order of the records.
+     */
+    private void mergeSort(int[] order, int[] scratch, int from, int to) {
+        if (to - from < 2)
+            return;
+        int middle = (from + to) >>> 1;
+        mergeSort(order, scratch, from, middle);
+        mergeSort(order, scratch, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0)
+            return;
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; ++i) {
+            if (right >= to || (left < middle && compare(scratch[left], scratch[right]) <= 0))
+                order[i] = scratch[left++];
+            else
+                order[i] = scratch[right++];
+        }
+    }
+
+    /**
+     * Finds the first record that began at or after the given time. The
+     * records must be sorted.
+     *
+     * @param startTime some time, in minutes since the epoch
+     * @return the position of the record, or the number of records if there is none
+     */
+    int firstStartingAtOrAfter(long startTime) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.startTimes[middle] < startTime)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
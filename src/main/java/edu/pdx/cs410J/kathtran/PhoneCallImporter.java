@@ -0,0 +1,164 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imports phone calls into a phone bill server from a file, one phone call
+ * per line, of the form
+ * <code>customer,caller,callee,MM/dd/yyyy hh:mm am|pm,MM/dd/yyyy hh:mm am|pm</code>.
+ * Blank lines and lines beginning with <code>#</code> are skipped.
+ * <p>
+ * Every line is checked with the same rules that {@link Project4} applies
+ * to its command line arguments, and lines that break them are reported
+ * and left out. The rest are sent to the server in batches without waiting
+ * for each batch to be answered, but only as many batches are sent at once
+ * as the client allows in flight, so reading waits on a slow server. The
+ * file is read one line at a time and only the batches in flight are held,
+ * so however big the file is, importing it takes the same memory.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneCallImporter {
+
+    private static final int MAX_REJECTIONS_SHOWN = 10;
+
+    private final PhoneBillRestClient client;
+    private final int batchSize;
+    private final Project4 rules = new Project4();
+
+    private final List<String> customers;
+    private final List<PhoneCall> phoneCalls;
+    private final LongAdder imported = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private long lines = 0;
+    private long rejected = 0;
+
+    /**
+     * @param client    the client of the server, whose asynchronous requests send the batches
+     * @param batchSize the most phone calls sent in a single request
+     */
+    PhoneCallImporter(PhoneBillRestClient client, int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batches must hold at least one phone call");
+        this.client = client;
+        this.batchSize = batchSize;
+        this.customers = new ArrayList<>(batchSize);
+        this.phoneCalls = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Reads phone calls until the end of the input and sends them to the server,
+     * waits for the server to answer every batch, and then writes how many phone
+     * calls were imported per second and how many lines were rejected.
+     *
+     * @param in  the phone calls, one per line
+     * @param out where rejected lines and the report are written
+     * @throws IOException if the input cannot be read
+     */
+    void run(BufferedReader in, PrintStream out) throws IOException {
+        long start = System.nanoTime();
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                this.lines += 1;
+                if (line.trim().isEmpty() || line.startsWith("#"))
+                    continue;
+                if (!parseLine(line)) {
+                    this.rejected += 1;
+                    if (this.rejected <= MAX_REJECTIONS_SHOWN)
+                        out.println("Rejected line " + this.lines + ": " + line);
+                    continue;
+                }
+                if (this.phoneCalls.size() == this.batchSize)
+                    send();
+            }
+            if (!this.phoneCalls.isEmpty())
+                send();
+        } finally {
+            this.client.close();
+        }
+        report(out, System.nanoTime() - start);
+    }
+
+    /**
+     * Checks a line as command line arguments would be, and adds its phone call
+     * to the batch being filled if it is valid.
+     *
+     * @param line some line of the form described above
+     * @return whether or not the line holds a valid phone call
+     */
+    boolean parseLine(String line) {
+        String[] fields = line.split(",");
+        if (fields.length != 5)
+            return false;
+        String customer = fields[0].trim();
+        String caller = fields[1].trim();
+        String callee = fields[2].trim();
+        String startTime = validTime(fields[3]);
+        String endTime = validTime(fields[4]);
+        if (customer.isEmpty() || !this.rules.isValidPhoneNumber(caller) || !this.rules.isValidPhoneNumber(callee)
+                || startTime == null || endTime == null)
+            return false;
+        this.customers.add(this.rules.correctNameCasing(customer));
+        this.phoneCalls.add(new PhoneCall(caller, callee, startTime, endTime));
+        return true;
+    }
+
+    /**
+     * @return the number of phone calls in the batch being filled
+     */
+    int getBatchedPhoneCallCount() {
+        return this.phoneCalls.size();
+    }
+
+    /**
+     * @param dateAndTime some date, time and am/pm marker, separated by spaces
+     * @return the date and time, if valid, or <code>null</code>
+     */
+    private String validTime(String dateAndTime) {
+        String[] parts = dateAndTime.trim().split(" +");
+        try {
+            if (parts.length == 3 && this.rules.isValidDateAndTime(parts[0], parts[1], parts[2].toUpperCase()))
+                return parts[0] + " " + parts[1] + " " + parts[2];
+        } catch (NumberFormatException | ParseException ex) {
+            // Invalid
+        }
+        return null;
+    }
+
+    /**
+     * Sends the batch that has been filled, waiting first if too many are in
+     * flight, and empties it for the next.
+     */
+    private void send() {
+        int count = this.phoneCalls.size();
+        this.client.addPhoneCallsAsync(this.customers, this.phoneCalls).whenComplete((response, ex) -> {
+            if (ex == null && response.getCode() == HttpURLConnection.HTTP_OK)
+                this.imported.add(count);
+            else
+                this.failed.add(count);
+        });
+        this.customers.clear();
+        this.phoneCalls.clear();
+    }
+
+    /**
+     * Writes how many phone calls were imported per second, and how many lines
+     * were rejected or could not be added by the server.
+     */
+    private void report(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long count = this.imported.sum();
+        out.printf("Imported %d phone calls from %d lines in %.1f seconds (%.1f per second)%n",
+                count, this.lines, seconds, count / seconds);
+        out.printf("%d lines rejected, %d phone calls not added by the server%n", this.rejected, this.failed.sum());
+    }
+}
@@ -0,0 +1,191 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads phone calls for the REST API as text, one phone call per line, of the form
+ * <code>customer,caller,callee,MM/dd/yyyy hh:mm am|pm,MM/dd/yyyy hh:mm am|pm</code>.
+ * The customer's name is everything before the last four commas, so it may
+ * hold commas of its own. Blank lines are skipped. The client sends phone
+ * calls in this form by naming the {@link #CONTENT_TYPE} media type.
+ * <p>
+ * Lines are read from the text as it arrives into a buffer that is reused
+ * for every line, and each phone call is handed on as soon as its line
+ * has been read, so that a body of any size may be read without holding
+ * it all. A line that is not a valid phone call is handed on instead as
+ * the position of the first field that is wrong.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneCallLines {
+
+    /**
+     * The media type of a list of phone calls in this form.
+     */
+    static final String CONTENT_TYPE = "text/x-phonebill-calls";
+
+    /**
+     * The longest line that is read. The rest of a longer line is skipped.
+     */
+    static final int MAX_LINE_LENGTH = 4096;
+
+    /**
+     * Receives what is read from each line.
+     */
+    interface Handler {
+
+        /**
+         * Receives the phone call read from a line.
+         *
+         * @param customer  the name of the customer whose phone bill holds the phone call
+         * @param phoneCall some phone call
+         * @throws IOException if the phone call cannot be kept
+         */
+        void phoneCall(String customer, PhoneCall phoneCall) throws IOException;
+
+        /**
+         * Receives the position of a line that is not a valid phone call.
+         *
+         * @param line   the number of the line, counting from 1
+         * @param column the position in the line of the first field that is wrong, counting from 1
+         * @param field  the name of that field
+         */
+        void rejected(long line, int column, String field);
+    }
+
+    /**
+     * Determines whether or not a "Content-Type" header names this form.
+     *
+     * @param header the value of the header, which may be <code>null</code>
+     * @return True if the header names {@link #CONTENT_TYPE}, otherwise false
+     */
+    static boolean isNamedBy(String header) {
+        return header != null && header.contains(CONTENT_TYPE);
+    }
+
+    /**
+     * Reads phone calls until the end of the text, handing each line to the
+     * handler as soon as it has been read.
+     *
+     * @param in      where the phone calls are read from
+     * @param handler receives each phone call, or the position of each line that
+     *                is not one
+     * @return the number of lines read
+     * @throws IOException if the text cannot be read, or the handler cannot keep a phone call
+     */
+    static long read(Reader in, Handler handler) throws IOException {
+        char[] buffer = new char[8192];
+        StringBuilder line = new StringBuilder(128);
+        int[] commas = new int[4];
+        boolean tooLong = false;
+        long lines = 0;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            for (int i = 0; i < read; ++i) {
+                char c = buffer[i];
+                if (c == '\n') {
+                    lines += 1;
+                    handleLine(line, commas, tooLong, lines, handler);
+                    line.setLength(0);
+                    tooLong = false;
+                } else if (line.length() < MAX_LINE_LENGTH) {
+                    line.append(c);
+                } else {
+                    tooLong = true;
+                }
+            }
+        }
+        if (line.length() > 0) {
+            lines += 1;
+            handleLine(line, commas, tooLong, lines, handler);
+        }
+        return lines;
+    }
+
+    /**
+     * Reads the phone call on a single line, and hands it, or the position of
+     * the first field that is wrong, to the handler.
+     */
+    private static void handleLine(StringBuilder line, int[] commas, boolean tooLong, long number,
+                                   Handler handler) throws IOException {
+        int to = line.length();
+        if (to > 0 && line.charAt(to - 1) == '\r')
+            to -= 1;
+        if (tooLong) {
+            handler.rejected(number, MAX_LINE_LENGTH + 1, "line length");
+            return;
+        }
+        if (isBlank(line, 0, to))
+            return;
+
+        int found = 0;
+        for (int i = to - 1; i >= 0 && found < commas.length; --i) {
+            if (line.charAt(i) == ',')
+                commas[found++] = i;
+        }
+        if (found < commas.length) {
+            handler.rejected(number, to + 1, "number of fields");
+            return;
+        }
+
+        int customerEnd = trimEnd(line, 0, commas[3]);
+        int customerStart = trimStart(line, 0, customerEnd);
+        if (customerStart == customerEnd) {
+            handler.rejected(number, 1, "customer");
+            return;
+        }
+        int callerStart = trimStart(line, commas[3] + 1, commas[2]);
+        int callerEnd = trimEnd(line, callerStart, commas[2]);
+        if (PhoneCallParser.parsePhoneNumber(line, callerStart, callerEnd) < 0) {
+            handler.rejected(number, callerStart + 1, "caller");
+            return;
+        }
+        int calleeStart = trimStart(line, commas[2] + 1, commas[1]);
+        int calleeEnd = trimEnd(line, calleeStart, commas[1]);
+        if (PhoneCallParser.parsePhoneNumber(line, calleeStart, calleeEnd) < 0) {
+            handler.rejected(number, calleeStart + 1, "callee");
+            return;
+        }
+        int startTimeStart = trimStart(line, commas[1] + 1, commas[0]);
+        long startTime = PhoneCallParser.parseDateTime(line, startTimeStart, trimEnd(line, startTimeStart, commas[0]));
+        if (startTime == PhoneCallParser.INVALID) {
+            handler.rejected(number, startTimeStart + 1, "start time");
+            return;
+        }
+        int endTimeStart = trimStart(line, commas[0] + 1, to);
+        long endTime = PhoneCallParser.parseDateTime(line, endTimeStart, trimEnd(line, endTimeStart, to));
+        if (endTime == PhoneCallParser.INVALID) {
+            handler.rejected(number, endTimeStart + 1, "end time");
+            return;
+        }
+
+        handler.phoneCall(line.substring(customerStart, customerEnd), new PhoneCall(
+                line.substring(callerStart, callerEnd), line.substring(calleeStart, calleeEnd), startTime, endTime));
+    }
+
+    private static boolean isBlank(CharSequence text, int from, int to) {
+        return trimStart(text, from, to) == to;
+    }
+
+    /**
+     * @return the position of the first character in the given part of the text
+     * that is not whitespace, or the end of that part if there is none
+     */
+    private static int trimStart(CharSequence text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from)))
+            ++from;
+        return from;
+    }
+
+    /**
+     * @return the position after the last character in the given part of the text
+     * that is not whitespace, or the start of that part if there is none
+     */
+    private static int trimEnd(CharSequence text, int from, int to) {
+        while (to > from && Character.isWhitespace(text.charAt(to - 1)))
+            --to;
+        return to;
+    }
+}
@@ -0,0 +1,239 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Parses the phone numbers and dates and times of phone calls by hand,
+ * without regular expressions, date formats, or exceptions, so that
+ * parsing a phone call allocates nothing and may be done from many
+ * threads at once. Malformed input is reported by returning a value
+ * that no valid input could produce.
+ * <p>
+ * Phone numbers are of the form <code>nnn-nnn-nnnn</code>. Dates and times
+ * are of the form <code>MM/dd/yyyy hh:mm AM|PM</code>, where the month, day,
+ * and hour may be one digit, the year may be two digits, and the AM/PM
+ * marker may be in either case. Two-digit years are read as the year
+ * within 80 years before, or 20 years after, the year this class was
+ * loaded, as {@link java.text.SimpleDateFormat} reads them. Times are
+ * taken to be in the default time zone.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneCallParser {
+
+    /**
+     * Returned for a date or time that cannot be parsed.
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * The earliest and latest times, in minutes since the epoch, that a date
+     * and time of the form above may name in any time zone.
+     */
+    static final long MIN_DATE_TIME = (daysSinceEpoch(0, 1, 1) - 1) * MINUTES_PER_DAY;
+    static final long MAX_DATE_TIME = (daysSinceEpoch(10000, 1, 1) + 1) * MINUTES_PER_DAY;
+
+    private static final TimeZone ZONE = TimeZone.getDefault();
+    private static final int CENTURY_START = Calendar.getInstance().get(Calendar.YEAR) - 80;
+
+    /**
+     * Reads the digits of a phone number.
+     *
+     * @param text some text
+     * @return the value of the digits, or -1 if the text is not of the form <code>nnn-nnn-nnnn</code>
+     */
+    static long parsePhoneNumber(CharSequence text) {
+        return text == null ? -1 : parsePhoneNumber(text, 0, text.length());
+    }
+
+    /**
+     * Reads the digits of a phone number from part of some text.
+     *
+     * @param text some text
+     * @param from where the phone number begins
+     * @param to   where the phone number ends (exclusive)
+     * @return the value of the digits, or -1 if that part of the text is not of
+     * the form <code>nnn-nnn-nnnn</code>
+     */
+    static long parsePhoneNumber(CharSequence text, int from, int to) {
+        if (to - from != 12 || text.charAt(from + 3) != '-' || text.charAt(from + 7) != '-')
+            return -1;
+        long value = 0;
+        for (int i = from; i < to; ++i) {
+            if (i == from + 3 || i == from + 7)
+                continue;
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Reads a date and time.
+     *
+     * @param text some text
+     * @return the date and time, in minutes since the epoch, or {@link #INVALID}
+     * if the text is not a valid date and time
+     */
+    static long parseDateTime(CharSequence text) {
+        return text == null ? INVALID : parseDateTime(text, 0, text.length());
+    }
+
+    /**
+     * Reads a date and time from part of some text. The date, time, and AM/PM
+     * marker must be separated by single spaces. As in the short form of newer
+     * JDKs, the date may be followed by a comma, and the AM/PM marker may be
+     * preceded by a no-break or narrow no-break space instead.
+     *
+     * @param text some text
+     * @param from where the date and time begin
+     * @param to   where the date and time end (exclusive)
+     * @return the date and time, in minutes since the epoch, or {@link #INVALID}
+     * if that part of the text is not a valid date and time
+     */
+    static long parseDateTime(CharSequence text, int from, int to) {
+        int dateEnd = indexOf(text, ' ', from, to);
+        int clockEnd = indexOfSpace(text, dateEnd + 1, to);
+        if (clockEnd < 0 || dateEnd < 0)
+            return INVALID;
+
+        long day = parseDate(text, from, dateEnd > from && text.charAt(dateEnd - 1) == ',' ? dateEnd - 1 : dateEnd);
+        int clock = parseClock(text, dateEnd + 1, clockEnd);
+        if (day == INVALID || clock < 0 || to - clockEnd != 3)
+            return INVALID;
+
+        char meridiem = Character.toUpperCase(text.charAt(clockEnd + 1));
+        if ((meridiem != 'A' && meridiem != 'P') || Character.toUpperCase(text.charAt(clockEnd + 2)) != 'M')
+            return INVALID;
+        int minuteOfDay = clock % (12 * 60) + (meridiem == 'P' ? 12 * 60 : 0);
+
+        long localMillis = (day * MINUTES_PER_DAY + minuteOfDay) * 60000L;
+        // Like java.util.Calendar, a time repeated when clocks are set back is taken as the
+        // later one, and a time skipped when clocks are set forward as if they had not been
+        long millis = localMillis - ZONE.getOffset(localMillis - ZONE.getRawOffset());
+        millis = localMillis - ZONE.getOffset(millis);
+        return Math.floorDiv(millis, 60000L);
+    }
+
+    /**
+     * Reads a date of the form <code>MM/dd/yyyy</code> from part of some text.
+     *
+     * @param text some text
+     * @param from where the date begins
+     * @param to   where the date ends (exclusive)
+     * @return the number of days from 1/1/1970 to the date, or {@link #INVALID}
+     * if that part of the text is not a valid date
+     */
+    static long parseDate(CharSequence text, int from, int to) {
+        int monthEnd = indexOf(text, '/', from, to);
+        int dayEnd = indexOf(text, '/', monthEnd + 1, to);
+        if (monthEnd < 0 || dayEnd < 0)
+            return INVALID;
+        int month = parseDigits(text, from, monthEnd, 1, 2);
+        int day = parseDigits(text, monthEnd + 1, dayEnd, 1, 2);
+        int year = parseDigits(text, dayEnd + 1, to, 2, 4);
+        if (month < 1 || month > 12 || day < 1 || year < 0 || (to - dayEnd - 1) == 3)
+            return INVALID;
+        if (to - dayEnd - 1 == 2) {
+            year += CENTURY_START / 100 * 100;
+            if (year < CENTURY_START)
+                year += 100;
+        }
+        if (day > daysInMonth(year, month))
+            return INVALID;
+        return daysSinceEpoch(year, month, day);
+    }
+
+    /**
+     * Reads a time of the form <code>hh:mm</code> on a 12-hour clock from part of some text.
+     *
+     * @param text some text
+     * @param from where the time begins
+     * @param to   where the time ends (exclusive)
+     * @return the number of minutes past the hour of the time plus 60 times its hour, or -1 if
+     * that part of the text is not of the form <code>hh:mm</code>, with an hour from 1 to 12
+     */
+    static int parseClock(CharSequence text, int from, int to) {
+        int hourEnd = indexOf(text, ':', from, to);
+        if (hourEnd < 0 || to - hourEnd != 3)
+            return -1;
+        int hour = parseDigits(text, from, hourEnd, 1, 2);
+        int minute = parseDigits(text, hourEnd + 1, to, 2, 2);
+        if (hour < 1 || hour > 12 || minute < 0 || minute > 59)
+            return -1;
+        return hour * 60 + minute;
+    }
+
+    /**
+     * Reads a number written with the given number of digits.
+     *
+     * @return the number, or -1 if there are too few or too many digits, or
+     * something other than a digit
+     */
+    private static int parseDigits(CharSequence text, int from, int to, int minDigits, int maxDigits) {
+        if (to - from < minDigits || to - from > maxDigits)
+            return -1;
+        int value = 0;
+        for (int i = from; i < to; ++i) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @return the position of the first occurrence of the character in the given
+     * part of the text, or -1 if there is none
+     */
+    private static int indexOf(CharSequence text, char c, int from, int to) {
+        if (from < 0)
+            return -1;
+        for (int i = from; i < to; ++i) {
+            if (text.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position of the first space, no-break space, or narrow no-break
+     * space in the given part of the text, or -1 if there is none
+     */
+    private static int indexOfSpace(CharSequence text, int from, int to) {
+        if (from < 0)
+            return -1;
+        for (int i = from; i < to; ++i) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\u00A0' || c == '\u202F')
+                return i;
+        }
+        return -1;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2)
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * @return the number of days from 1/1/1970 to the given date in the
+     * proleptic Gregorian calendar
+     */
+    private static long daysSinceEpoch(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,99 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each distinct phone number a compact <code>int</code> identifier,
+ * so that a phone number that appears in many phone call records, across
+ * every customer's phone bill, is only stored once. Identifiers are handed
+ * out in order starting from zero and are never reused.
+ * <p>
+ * Looking up an identifier that has already been assigned does not lock.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneNumberDictionary {
+
+    /**
+     * The dictionary shared by every phone bill on the server.
+     */
+    static final PhoneNumberDictionary SHARED = new PhoneNumberDictionary();
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Integer> identifiers = new ConcurrentHashMap<>();
+
+    /**
+     * The phone number, and the value of its digits (or -1 if it is not of the
+     * form <code>nnn-nnn-nnnn</code>), for each identifier. Entries are written
+     * while locked and before their identifier is handed out, so any thread
+     * that has been given an identifier will see its entries.
+     */
+    private volatile String[] numbers = new String[INITIAL_CAPACITY];
+    private volatile long[] values = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Gets the identifier of some phone number, assigning it a new one if it
+     * has not been seen before.
+     *
+     * @param number some phone number
+     * @return the phone number's identifier
+     */
+    int encode(String number) {
+        Integer identifier = this.identifiers.get(number);
+        if (identifier != null)
+            return identifier;
+        synchronized (this) {
+            identifier = this.identifiers.get(number);
+            if (identifier != null)
+                return identifier;
+            if (this.size == this.numbers.length) {
+                this.numbers = Arrays.copyOf(this.numbers, this.size * 2);
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.numbers[this.size] = number;
+            this.values[this.size] = digitsOf(number);
+            identifier = this.size++;
+            this.identifiers.put(number, identifier);
+            return identifier;
+        }
+    }
+
+    /**
+     * @param identifier the identifier of some phone number
+     * @return the phone number
+     */
+    String decode(int identifier) {
+        return this.numbers[identifier];
+    }
+
+    /**
+     * @param identifier the identifier of some phone number
+     * @return the value of the phone number's digits, or -1 if it is not of
+     * the form <code>nnn-nnn-nnnn</code>
+     */
+    long valueOf(int identifier) {
+        return this.values[identifier];
+    }
+
+    /**
+     * @return the number of distinct phone numbers seen so far
+     */
+    synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Reads the digits of a phone number of the form <code>nnn-nnn-nnnn</code>.
+     *
+     * @param number some phone number
+     * @return the value of the digits, or -1 if the phone number is of some other form
+     */
+    private static long digitsOf(String number) {
+        return PhoneCallParser.parsePhoneNumber(number);
+    }
+}
@@ -0,0 +1,130 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the phone calls, across every customer's phone bill, that a phone
+ * number was involved in as either the caller or the callee. Each phone
+ * number maps to the phone calls that involve it, kept in the order in
+ * which they were added, so that looking up a number takes time in
+ * proportion to the number of calls found rather than to the number of
+ * calls on the server.
+ * <p>
+ * Every phone call indexed is kept once, in an append-only log in the same
+ * compact form as in {@link PhoneCallColumns}, along with the name of the
+ * customer whose phone bill holds it. Each phone number then refers to its
+ * phone calls by their positions in the log, which take four bytes apiece,
+ * in an array that starts with room for just one, since most phone numbers
+ * are involved in only a few calls.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class PhoneNumberIndex {
+
+    private final Map<String, References> references = new ConcurrentHashMap<>();
+
+    /**
+     * Every phone call indexed, in the order in which they were added, and the
+     * customer whose phone bill holds each. Records are only ever added past
+     * the end, so a view of the log may be read without locking while more are
+     * added. Guarded by the log itself.
+     */
+    private final PhoneCallColumns log = new PhoneCallColumns();
+    private String[] customers = new String[16];
+
+    /**
+     * A phone call found by {@link #find(String)}, with the customer whose phone bill holds it.
+     */
+    static class Reference {
+        final String customer;
+        final PhoneCall phoneCall;
+
+        Reference(String customer, PhoneCall phoneCall) {
+            this.customer = customer;
+            this.phoneCall = phoneCall;
+        }
+    }
+
+    /**
+     * The positions in the log of the phone calls that involve a single phone number.
+     */
+    private static class References {
+        private int[] positions = new int[1];
+        private int size = 0;
+
+        synchronized void add(int position) {
+            if (this.size == this.positions.length)
+                this.positions = Arrays.copyOf(this.positions, this.size * 2);
+            this.positions[this.size++] = position;
+        }
+
+        synchronized int[] copy() {
+            return Arrays.copyOf(this.positions, this.size);
+        }
+    }
+
+    /**
+     * Indexes phone calls added to a customer's phone bill under both their
+     * caller and callee numbers.
+     *
+     * @param customer   the name of the customer whose phone bill holds the phone calls
+     * @param phoneCalls some phone calls
+     */
+    void add(String customer, Collection<PhoneCall> phoneCalls) {
+        int position;
+        synchronized (this.log) {
+            position = this.log.size();
+            this.log.ensureCapacity(position + phoneCalls.size());
+            if (position + phoneCalls.size() > this.customers.length)
+                this.customers = Arrays.copyOf(this.customers,
+                        Math.max(position + phoneCalls.size(), this.customers.length + (this.customers.length >> 1)));
+            for (PhoneCall phoneCall : phoneCalls) {
+                this.customers[this.log.size()] = customer;
+                this.log.add(phoneCall);
+            }
+        }
+        for (PhoneCall phoneCall : phoneCalls) {
+            referencesTo(phoneCall.getCaller()).add(position);
+            if (!phoneCall.getCallee().equals(phoneCall.getCaller()))
+                referencesTo(phoneCall.getCallee()).add(position);
+            position += 1;
+        }
+    }
+
+    /**
+     * Finds the phone calls that some phone number was involved in.
+     *
+     * @param number some phone number
+     * @return the phone calls involving the number, in the order in which they
+     * were added, which are empty if there are none
+     */
+    List<Reference> find(String number) {
+        References found = this.references.get(number);
+        if (found == null)
+            return new ArrayList<>();
+        int[] positions = found.copy();
+        // Calls added at once for different customers may reach the references
+        // in a different order than they reached the log
+        Arrays.sort(positions);
+        PhoneCallColumns log;
+        String[] customers;
+        synchronized (this.log) {
+            log = this.log.view();
+            customers = this.customers;
+        }
+        List<Reference> references = new ArrayList<>(positions.length);
+        for (int position : positions)
+            references.add(new Reference(customers[position], log.get(position)));
+        return references;
+    }
+
+    private References referencesTo(String number) {
+        return this.references.computeIfAbsent(number, k -> new References());
+    }
+}
@@ -2,14 +2,16 @@ package edu.pdx.cs410J.kathtran;
 
 import edu.pdx.cs410J.web.HttpRequestHelper;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.net.HttpURLConnection;
-import java.text.DateFormat;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * Represents Project 4 and contains the main method that runs the Phone
@@ -26,6 +28,14 @@ import java.util.regex.Pattern;
  * began.
  * <p>
  * v4.0 UPDATE: Server/client communication using REST established.
+ * The <code>-loadtest</code> option puts load on the server with a
+ * {@link LoadGenerator} instead of adding or querying a single call, and
+ * the <code>-import</code> option adds every call in a file with a
+ * {@link PhoneCallImporter}. Many servers may be named by giving lists
+ * to <code>-host</code> and <code>-port</code>, in which case each
+ * customer is routed to one of them by a {@link PhoneBillCluster}.
+ * Given only a host and port, the phone bills of every server are
+ * listed together.
  *
  * @author Kathleen Tran
  * @version 4.0
@@ -36,7 +46,7 @@ public class Project4 {
     private static String portString;
     private static boolean hostFlag = false;
     private static boolean portFlag = false;
-    private static int port;
+    private static List<String> endpoints;
 
     private static String searchAfter;
     private static String searchBefore;
@@ -65,6 +75,17 @@ public class Project4 {
 
         Project4 project4 = new Project4();
 
+        for (String arg : args) {
+            if (arg.equals("-loadtest")) {
+                loadTest(args);
+                return;
+            }
+            if (arg.equals("-import")) {
+                importPhoneCalls(args);
+                return;
+            }
+        }
+
         for (String arg : args) {
             if (arg.equals("-README"))
                 project4.readme();
@@ -120,14 +141,23 @@ public class Project4 {
                 usage("Missing port");
             else if (portString != null) {
                 try {
-                    port = Integer.parseInt(portString);
-                } catch (NumberFormatException ex) {
-                    usage("Port \"" + portString + "\" must be an integer");
+                    endpoints = PhoneBillCluster.parseEndpoints(hostName, portString);
+                } catch (IllegalArgumentException ex) {
+                    usage(ex.getMessage());
                     return;
                 }
             }
         }
 
+        // With nothing after the options, every customer's phone bill is listed, and
+        // with only a customer's name, that customer's phone bill
+        if (hostFlag && portFlag && !search && index >= args.length - 1) {
+            if (index < args.length)
+                customer = project4.correctNameCasing(args[index]);
+            contactServers();
+            System.exit(0);
+        }
+
         //************************** PARSING ARGUMENTS FOR PHONE CALL **************************//
 
         try {
@@ -203,28 +233,165 @@ public class Project4 {
             System.exit(1);
         }
 
-        if (hostFlag && portFlag) {
-            PhoneBillRestClient client = new PhoneBillRestClient(hostName, port);
-            HttpRequestHelper.Response response;
-            try {
-                if (customer == null)
-                    response = client.getAllCustomersAndPhoneBills();
-                else if (phoneBill == null && searchAfter == null && searchBefore == null)
+        if (hostFlag && portFlag)
+            contactServers();
+        System.exit(0);
+    }
+
+    /**
+     * Sends the request described by the arguments to the server that holds the
+     * customer's phone bill, and prints its answer. If no customer was given,
+     * every server is asked for its phone bills, and their answers are merged.
+     */
+    private static void contactServers() {
+        PhoneBillCluster cluster = new PhoneBillCluster(endpoints);
+        String content;
+        try {
+            if (customer == null)
+                content = cluster.getAllCustomersAndPhoneBills();
+            else {
+                PhoneBillRestClient client = cluster.clientFor(customer);
+                HttpRequestHelper.Response response;
+                if (phoneBill == null && searchAfter == null && searchBefore == null)
                     response = client.getPhoneBills(customer);
                 else if (search && searchAfter != null && searchBefore != null)
                     response = client.getSearchedPhoneBills(customer, searchAfter, searchBefore);
                 else
                     response = client.addCustomerPhoneCallPair(customer, phoneCall);
                 checkResponseCode(HttpURLConnection.HTTP_OK, response);
-            } catch (IOException ex) {
-                error("While contacting server: " + ex);
-                return;
-            } catch (NullPointerException ex) {
-                System.err.println("Something unexpected has happened. " +
-                        "Please re-examine your arguments and try again.");
-                return;
+                content = response.getContent();
             }
-            System.out.println(response.getContent());
+        } catch (IOException ex) {
+            error("While contacting server: " + ex);
+            return;
+        } catch (NullPointerException ex) {
+            System.err.println("Something unexpected has happened. " +
+                    "Please re-examine your arguments and try again.");
+            return;
+        } finally {
+            cluster.close();
+        }
+        System.out.println(content);
+    }
+
+    /**
+     * Runs a load test against the server, as described by the arguments:
+     * <code>-host &lt;hostname&gt; -port &lt;port&gt; -loadtest &lt;threads&gt; &lt;seconds&gt;</code>,
+     * optionally followed by <code>-mix &lt;add&gt;:&lt;read&gt;:&lt;search&gt;</code>, the
+     * relative weights of each kind of request (80:15:5 by default), and by
+     * <code>-customers &lt;count&gt;</code>, the number of customers (100 by default).
+     *
+     * @param args the command line arguments
+     */
+    private static void loadTest(String... args) {
+        String host = null;
+        int serverPort = -1;
+        int threads = -1;
+        int seconds = -1;
+        int[] mix = {80, 15, 5};
+        int customers = 100;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "-host":
+                        host = args[++i];
+                        break;
+                    case "-port":
+                        serverPort = Integer.parseInt(args[++i]);
+                        break;
+                    case "-loadtest":
+                        threads = Integer.parseInt(args[++i]);
+                        seconds = Integer.parseInt(args[++i]);
+                        break;
+                    case "-mix":
+                        String[] weights = args[++i].split(":");
+                        if (weights.length != 3)
+                            usage("The mix must be given as <add>:<read>:<search>");
+                        for (int j = 0; j < 3; ++j)
+                            mix[j] = Integer.parseInt(weights[j]);
+                        break;
+                    case "-customers":
+                        customers = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        usage("Unknown load test argument \"" + args[i] + "\"");
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            usage(MISSING_ARGS);
+        } catch (NumberFormatException ex) {
+            usage("Load test arguments must be integers: " + ex.getMessage());
+        }
+        if (host == null || serverPort < 0)
+            usage("A load test needs both -host and -port");
+
+        try {
+            new LoadGenerator(host, serverPort, threads, seconds, mix, customers).run(System.out);
+        } catch (IllegalArgumentException ex) {
+            usage(ex.getMessage());
+        } catch (InterruptedException ex) {
+            error("Load test interrupted");
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Imports phone calls into the server from a file, as described by the arguments:
+     * <code>-host &lt;hostname&gt; -port &lt;port&gt; -import &lt;file&gt;</code>, where
+     * the file <code>-</code> is standard in, optionally followed by
+     * <code>-batch &lt;size&gt;</code>, the most phone calls sent in a single request
+     * (100 by default), and by <code>-inflight &lt;count&gt;</code>, the most requests
+     * outstanding at once (8 by default). For more than 5 requests in flight to
+     * keep their connections alive, the JVM must be launched with
+     * <code>-Dhttp.maxConnections=&lt;count&gt;</code> as well.
+     *
+     * @param args the command line arguments
+     */
+    private static void importPhoneCalls(String... args) {
+        String host = null;
+        int serverPort = -1;
+        String file = null;
+        int batchSize = 100;
+        int inFlight = 8;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "-host":
+                        host = args[++i];
+                        break;
+                    case "-port":
+                        serverPort = Integer.parseInt(args[++i]);
+                        break;
+                    case "-import":
+                        file = args[++i];
+                        break;
+                    case "-batch":
+                        batchSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "-inflight":
+                        inFlight = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        usage("Unknown import argument \"" + args[i] + "\"");
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            usage(MISSING_ARGS);
+        } catch (NumberFormatException ex) {
+            usage("Import arguments must be integers: " + ex.getMessage());
+        }
+        if (host == null || serverPort < 0)
+            usage("An import needs both -host and -port");
+
+        try (BufferedReader in = file.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            new PhoneCallImporter(new PhoneBillRestClient(host, serverPort, false, inFlight), batchSize)
+                    .run(in, System.out);
+        } catch (IllegalArgumentException ex) {
+            usage(ex.getMessage());
+        } catch (IOException ex) {
+            error("While importing " + file + ": " + ex);
         }
         System.exit(0);
     }
@@ -263,9 +430,13 @@ public class Project4 {
         PrintStream err = System.err;
         err.println("** " + message);
         err.println();
-        err.println("usage: java Project4 host port [customer] [phone call]");
-        err.println("  host    Host of web server");
-        err.println("  port    Port of web server");
+        err.println("usage: java Project4 -host host[,host...] -port port[,port...] [customer] [phone call]");
+        err.println("   or: java Project4 -host host -port port -loadtest threads seconds");
+        err.println("                     [-mix add:read:search] [-customers count]");
+        err.println("   or: java Project4 -host host -port port -import file|-");
+        err.println("                     [-batch size] [-inflight count]");
+        err.println("  host    Host of web server, or hosts of many, separated by commas");
+        err.println("  port    Port of web server, or ports of many, separated by commas");
         err.println("  customer     Customer to query");
         err.println("  phone call   Phone Call to add to server");
         err.println();
@@ -305,9 +476,7 @@ public class Project4 {
      * @return True if the form is valid, otherwise false
      */
     public boolean isValidPhoneNumber(String phoneNumberInput) {
-        Pattern phoneNumberFormat = Pattern.compile("\\d{3}-\\d{3}-\\d{4}");
-        Matcher numberToBeChecked = phoneNumberFormat.matcher(phoneNumberInput);
-        return numberToBeChecked.matches();
+        return PhoneCallParser.parsePhoneNumber(phoneNumberInput) >= 0;
     }
 
     /**
@@ -323,9 +492,8 @@ public class Project4 {
      */
     public boolean isValidDateAndTime(String dateInput, String timeInput, String timeMark) throws
             NumberFormatException, ParseException {
-        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
-        dateFormat.setLenient(false);
-        dateFormat.parse(dateInput);
+        if (PhoneCallParser.parseDate(dateInput, 0, dateInput.length()) == PhoneCallParser.INVALID)
+            throw new ParseException("Unparseable date: \"" + dateInput + "\"", 0);
         return isValidTimeOfDay(timeInput) && (timeMark.equals("AM") || timeMark.equals("PM"));
     }
 
@@ -338,9 +506,7 @@ public class Project4 {
      * @return True if the form is valid, otherwise false
      */
     public boolean isValidTimeOfDay(String timeToCheck) {
-        Pattern timeFormat = Pattern.compile("(0?[1-9]|1[0-2]):[0-5][0-9]");
-        Matcher timeToBeChecked = timeFormat.matcher(timeToCheck);
-        return timeToBeChecked.matches();
+        return PhoneCallParser.parseClock(timeToCheck, 0, timeToCheck.length()) >= 0;
     }
 
     /**
@@ -403,7 +569,24 @@ public class Project4 {
                 "\t\t\t\t\tsome starting time and some ending time will return\n" +
                 "\t\t\t\t\tall of the calls started between those times.\n" +
                 "-host <hostname>\tThe host computer on which the server runs.\n" +
+                "\t\t\t\t\tSeveral may be given, separated by commas.\n" +
                 "-port <port>\t\tThe port on which the server is listening.\n" +
+                "\t\t\t\t\tSeveral may be given, separated by commas, to\n" +
+                "\t\t\t\t\tspread customers across many servers.\n" +
+                "-loadtest <threads> <seconds>\n" +
+                "\t\t\t\t\tSends made-up requests to the server from the\n" +
+                "\t\t\t\t\tgiven number of threads for the given number of\n" +
+                "\t\t\t\t\tseconds, then reports throughput and latency.\n" +
+                "\t\t\t\t\tMay be followed by -mix <add>:<read>:<search>\n" +
+                "\t\t\t\t\tand -customers <count>.\n" +
+                "-import <file>\t\tAdds every phone call in the file, or in standard\n" +
+                "\t\t\t\t\tin if the file is -, to the server, one call per\n" +
+                "\t\t\t\t\tline as customer,caller,callee,start,end, then\n" +
+                "\t\t\t\t\treports calls per second and rejected lines.\n" +
+                "\t\t\t\t\tMay be followed by -batch <size> and\n" +
+                "\t\t\t\t\t-inflight <count>; launch java with\n" +
+                "\t\t\t\t\t-Dhttp.maxConnections=<count> to keep that\n" +
+                "\t\t\t\t\tmany connections alive.\n" +
                 "To add a calling event, the following arguments must be provided\n" +
                 "in the order listed below, separated by a single white space.\n\n" +
                 "<customer>\t\t\tPerson whose phone bill we're modelling\n" +
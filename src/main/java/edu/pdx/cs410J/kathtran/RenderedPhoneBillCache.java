@@ -0,0 +1,77 @@
+package edu.pdx.cs410J.kathtran;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the rendered text of recently requested phone bills, so that a
+ * phone bill that has not changed since it was last requested need not be
+ * rendered again. Each entry records the version of the phone bill it was
+ * rendered from, and is only used while the phone bill remains at that
+ * version. The least recently used entry is dropped once the cache is full,
+ * and phone bills with too many calls are not cached at all; they are always
+ * written straight to the response instead.
+ *
+ * @author Kathleen Tran
+ * @version 4.0
+ */
+class RenderedPhoneBillCache {
+
+    private final int maxPhoneCalls;
+    private final Map<String, Entry> entries;
+
+    /**
+     * The rendered text of some version of a phone bill.
+     */
+    private static class Entry {
+        private final long version;
+        private final String rendered;
+
+        Entry(long version, String rendered) {
+            this.version = version;
+            this.rendered = rendered;
+        }
+    }
+
+    /**
+     * @param maxEntries    the most phone bills that are cached at once
+     * @param maxPhoneCalls the most phone calls a phone bill may have to be cached
+     */
+    RenderedPhoneBillCache(int maxEntries, int maxPhoneCalls) {
+        this.maxPhoneCalls = maxPhoneCalls;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param phoneBill some phone bill
+     * @return whether or not the phone bill is small enough to be cached
+     */
+    boolean isCacheable(PhoneBill phoneBill) {
+        return phoneBill.getPhoneCallCount() <= this.maxPhoneCalls;
+    }
+
+    /**
+     * @param customer some name
+     * @param version  the current version of the customer's phone bill
+     * @return the phone bill rendered at that version, or <code>null</code> if
+     * it is not cached
+     */
+    synchronized String get(String customer, long version) {
+        Entry entry = this.entries.get(customer);
+        return entry != null && entry.version == version ? entry.rendered : null;
+    }
+
+    /**
+     * @param customer some name
+     * @param version  the version of the customer's phone bill that was rendered
+     * @param rendered the rendered phone bill
+     */
+    synchronized void put(String customer, long version, String rendered) {
+        this.entries.put(customer, new Entry(version, rendered));
+    }
+}
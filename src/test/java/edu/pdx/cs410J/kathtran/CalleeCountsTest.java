@@ -0,0 +1,49 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Test;
+
+import java.util.SortedMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link CalleeCounts} class.
+ */
+public class CalleeCountsTest {
+
+    @Test
+    public void testIncrementLeavesEarlierCountsUnchanged() {
+        CalleeCounts before = CalleeCounts.EMPTY.increment(3).increment(3);
+        CalleeCounts after = before.increment(3).increment(40);
+
+        assertEquals(2, before.get(3));
+        assertEquals(0, before.get(40));
+        assertEquals(1, before.size());
+        assertEquals(3, after.get(3));
+        assertEquals(1, after.get(40));
+        assertEquals(2, after.size());
+    }
+
+    @Test
+    public void testCountsCalleesWithLargeIdentifiers() {
+        CalleeCounts counts = CalleeCounts.EMPTY.increment(7).increment(Integer.MAX_VALUE)
+                .increment(1 << 20).increment(Integer.MAX_VALUE);
+
+        assertEquals(1, counts.get(7));
+        assertEquals(1, counts.get(1 << 20));
+        assertEquals(2, counts.get(Integer.MAX_VALUE));
+        assertEquals(0, counts.get(8));
+        assertEquals(0, CalleeCounts.EMPTY.get(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testToSortedMapListsCalleesByPhoneNumber() {
+        CalleeCounts counts = CalleeCounts.EMPTY.increment(1).increment(100).increment(1);
+        SortedMap<String, Integer> listed = counts.toSortedMap(identifier -> identifier == 1 ? "971" : "503");
+
+        assertEquals("503", listed.firstKey());
+        assertEquals(Integer.valueOf(1), listed.get("503"));
+        assertEquals(Integer.valueOf(2), listed.get("971"));
+        assertEquals(2, listed.size());
+    }
+}
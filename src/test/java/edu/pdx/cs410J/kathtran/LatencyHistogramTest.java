@@ -0,0 +1,33 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LatencyHistogram} class.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEveryValueFallsWithinItsBucket() {
+        for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " above bucket " + bucket, value <= LatencyHistogram.highestValueIn(bucket));
+            assertTrue(value + " below bucket " + bucket, bucket == 0 || value > LatencyHistogram.highestValueIn(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testPercentilesAreWithinSixPercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; ++value)
+            histogram.record(value * 1000);
+        long[] counts = histogram.getCounts();
+
+        assertEquals(50000000, LatencyHistogram.percentile(counts, 0.5), 50000000 * 0.0625);
+        assertEquals(99000000, LatencyHistogram.percentile(counts, 0.99), 99000000 * 0.0625);
+        assertEquals(99900000, LatencyHistogram.percentile(counts, 0.999), 99900000 * 0.0625);
+        assertEquals(0, LatencyHistogram.percentile(new LatencyHistogram().getCounts(), 0.5));
+    }
+}
@@ -0,0 +1,138 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the routing of customers by the {@link PhoneBillCluster} class, which needs no
+ * servers, and the merging of listings from servlets reached through stubbed clients.
+ */
+public class PhoneBillClusterTest {
+
+    private static final List<String> THREE_SERVERS = Arrays.asList("localhost:8080", "localhost:8081", "localhost:8082");
+
+    @Test
+    public void testEndpointsArePairedUp() {
+        assertEquals(THREE_SERVERS, PhoneBillCluster.parseEndpoints("localhost", "8080,8081,8082"));
+        assertEquals(Arrays.asList("a:8080", "b:8080"), PhoneBillCluster.parseEndpoints("a,b", "8080"));
+        assertEquals(Arrays.asList("a:8080", "b:8081"), PhoneBillCluster.parseEndpoints("a, b", "8080, 8081"));
+        for (String[] invalid : new String[][]{{"a,b", "1,2,3"}, {"a", "80a"}, {"a,,b", "1"}}) {
+            try {
+                PhoneBillCluster.parseEndpoints(invalid[0], invalid[1]);
+                fail(Arrays.toString(invalid));
+            } catch (IllegalArgumentException ex) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testCustomersAreSpreadEvenlyAndRoutedTheSameEveryTime() {
+        PhoneBillCluster cluster = new PhoneBillCluster(THREE_SERVERS);
+        PhoneBillCluster again = new PhoneBillCluster(THREE_SERVERS);
+        Map<String, Integer> customersPerServer = new HashMap<>();
+        for (int i = 0; i < 30000; ++i) {
+            String customer = "Customer " + i;
+            assertEquals(cluster.endpointFor(customer), again.endpointFor(customer));
+            customersPerServer.merge(cluster.endpointFor(customer), 1, Integer::sum);
+        }
+        assertEquals(3, customersPerServer.size());
+        for (int count : customersPerServer.values())
+            assertEquals(10000, count, 2000);
+    }
+
+    @Test
+    public void testAddingAServerMovesCustomersOnlyToIt() {
+        PhoneBillCluster before = new PhoneBillCluster(THREE_SERVERS);
+        PhoneBillCluster after = new PhoneBillCluster(Arrays.asList("localhost:8080", "localhost:8081",
+                "localhost:8082", "localhost:8083"));
+        int moved = 0;
+        for (int i = 0; i < 30000; ++i) {
+            String customer = "Customer " + i;
+            if (!before.endpointFor(customer).equals(after.endpointFor(customer))) {
+                assertEquals("localhost:8083", after.endpointFor(customer));
+                moved += 1;
+            }
+        }
+        assertEquals(7500, moved, 1500);
+    }
+
+    @Test
+    public void testListingsOfEveryServerAreMerged() throws Exception {
+        List<String> twoServers = Arrays.asList("localhost:8080", "localhost:8081");
+        Map<Integer, PhoneBillServlet> servlets = new HashMap<>();
+        servlets.put(8080, new PhoneBillServlet());
+        servlets.put(8081, new PhoneBillServlet());
+        PhoneBillCluster cluster = new PhoneBillCluster(twoServers, (host, port) -> clientOf(servlets.get(port)));
+
+        String phoneCall = new PhoneCall("503-555-1234", "971-555-6789",
+                "6/5/2015 10:30 AM", "6/5/2015 10:45 AM").toString();
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < 10; ++i) {
+            String customer = "Customer " + i;
+            String endpoint = cluster.endpointFor(customer);
+            used.add(endpoint);
+            servlets.get(Integer.parseInt(endpoint.substring(endpoint.indexOf(':') + 1))).doPost(
+                    PhoneBillServletTest.request("customer", customer, "phoneCall", phoneCall),
+                    PhoneBillServletTest.response(new StringWriter()));
+        }
+        for (PhoneBillServlet servlet : servlets.values())
+            servlet.doPost(PhoneBillServletTest.request("customer", "Moved", "phoneCall", phoneCall),
+                    PhoneBillServletTest.response(new StringWriter()));
+        assertEquals(2, used.size());
+
+        String listing = cluster.getAllCustomersAndPhoneBills();
+        cluster.close();
+        assertTrue(listing, listing.startsWith(Messages.getMappingCount(11)));
+        List<String> listed = new ArrayList<>();
+        for (String line : listing.split(System.lineSeparator())) {
+            if (line.endsWith("'s CS410J Phone Bill"))
+                listed.add(line.trim().substring(0, line.trim().indexOf('\'')));
+        }
+        List<String> sorted = new ArrayList<>(listed);
+        Collections.sort(sorted);
+        assertEquals(sorted, listed);
+        assertEquals(11, listed.size());
+        String moved = listing.substring(listing.indexOf("Moved's"));
+        assertTrue(moved, moved.contains("No. of Calls on Record: 2"));
+    }
+
+    /**
+     * Creates a client whose listing of every phone call is read straight from the given servlet.
+     */
+    private static PhoneBillRestClient clientOf(PhoneBillServlet servlet) {
+        return new PhoneBillRestClient("localhost", 0) {
+            @Override
+            public Map<String, List<PhoneCall>> getAllPhoneCalls() throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try {
+                    servlet.doGet(PhoneBillServletTest.request(Collections.singletonMap("Accept",
+                            PhoneCallCodec.CONTENT_TYPE)), PhoneBillServletTest.response(new StringWriter(), bytes,
+                            new HashMap<>()));
+                } catch (ServletException ex) {
+                    throw new IOException(ex);
+                }
+                Map<String, List<PhoneCall>> phoneCalls = new LinkedHashMap<>();
+                PhoneCallCodec.read(new ByteArrayInputStream(bytes.toByteArray()), (customer, phoneCall) ->
+                        phoneCalls.computeIfAbsent(customer, k -> new ArrayList<>()).add(phoneCall));
+                return phoneCalls;
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link PhoneBillJournal} class.
+ */
+public class PhoneBillJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static PhoneCall call(String startTime) {
+        return new PhoneCall("503-555-1234", "971-555-6789", startTime, "6/7/2015 11:45 PM");
+    }
+
+    @Test
+    public void testReplayReturnsAppendedPhoneCalls() throws Exception {
+        File file = folder.newFile();
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            assertEquals(0, journal.replay((customer, phoneCall) -> fail()));
+            journal.append("First", call("6/5/2015 10:30 AM"));
+            journal.append("Second", Arrays.asList(call("6/6/2015 10:30 AM"), call("6/7/2015 10:30 AM")));
+        }
+
+        List<String> customers = new ArrayList<>();
+        List<PhoneCall> phoneCalls = new ArrayList<>();
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            assertEquals(3, journal.replay((customer, phoneCall) -> {
+                customers.add(customer);
+                phoneCalls.add(phoneCall);
+            }));
+        }
+        assertEquals(Arrays.asList("First", "Second", "Second"), customers);
+        assertEquals(call("6/6/2015 10:30 AM").toString(), phoneCalls.get(1).toString());
+    }
+
+    @Test
+    public void testReplayDiscardsTornRecord() throws Exception {
+        File file = folder.newFile();
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            journal.append("First", call("6/5/2015 10:30 AM"));
+            journal.append("First", call("6/6/2015 10:30 AM"));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            assertEquals(1, journal.replay((customer, phoneCall) -> { }));
+            journal.append("First", call("6/7/2015 10:30 AM"));
+        }
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            assertEquals(2, journal.replay((customer, phoneCall) -> { }));
+        }
+    }
+
+    @Test
+    public void testRotatedJournalReplaysFromPosition() throws Exception {
+        File file = folder.newFile();
+        long position;
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            journal.append("First", call("6/5/2015 10:30 AM"));
+            position = journal.position();
+            journal.append("Second", call("6/6/2015 10:30 AM"));
+            assertEquals(1, journal.replay(position, (customer, phoneCall) -> assertEquals("Second", customer)));
+            long length = file.length();
+            journal.rotate(position);
+            assertTrue(file.length() < length);
+            journal.append("Third", call("6/7/2015 10:30 AM"));
+        }
+
+        List<String> customers = new ArrayList<>();
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            assertEquals(2, journal.replay(position, (customer, phoneCall) -> customers.add(customer)));
+            try {
+                journal.replay(0, (customer, phoneCall) -> fail());
+                fail("Records dropped by rotating the journal should not be replayed");
+            } catch (IOException ex) {
+                // Expected
+            }
+        }
+        assertEquals(Arrays.asList("Second", "Third"), customers);
+        assertEquals(Arrays.asList(file.getName()), Arrays.asList(folder.getRoot().list()));
+    }
+
+    @Test
+    public void testPhoneCallsThatCannotBeEncodedLeaveNothingBehind() throws Exception {
+        File file = folder.newFile();
+        char[] tooLong = new char[70000];
+        Arrays.fill(tooLong, 'x');
+        PhoneCall unencodable = new PhoneCall("503-555-1234", new String(tooLong),
+                call("6/6/2015 10:30 AM").getStartMinutes(), call("6/6/2015 10:30 AM").getEndMinutes());
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            try {
+                journal.append("First", Arrays.asList(call("6/5/2015 10:30 AM"), unencodable));
+                fail("A callee too long to encode should not be appended");
+            } catch (IOException ex) {
+                // Expected
+            }
+            journal.append("Second", call("6/7/2015 10:30 AM"));
+        }
+
+        List<String> customers = new ArrayList<>();
+        try (PhoneBillJournal journal = new PhoneBillJournal(file)) {
+            assertEquals(1, journal.replay((customer, phoneCall) -> customers.add(customer)));
+        }
+        assertEquals(Arrays.asList("Second"), customers);
+    }
+}
@@ -0,0 +1,138 @@
+package edu.pdx.cs410J.kathtran;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.pdx.cs410J.web.HttpRequestHelper.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the asynchronous requests of the {@link PhoneBillRestClient} class against
+ * a server in the same JVM, which holds each request until the test lets it go.
+ */
+public class PhoneBillRestClientTest {
+
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private final CountDownLatch answer = new CountDownLatch(1);
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger mostOutstanding = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/phonebill/calls", this::handle);
+        this.handlers = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.handlers);
+        this.server.start();
+    }
+
+    @After
+    public void stopServer() {
+        this.answer.countDown();
+        this.server.stop(0);
+        this.handlers.shutdownNow();
+    }
+
+    /**
+     * Answers with the request's decoded query once the test lets it go.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        this.mostOutstanding.accumulateAndGet(this.outstanding.incrementAndGet(), Math::max);
+        try {
+            this.answer.await();
+            byte[] body = URLDecoder.decode(exchange.getRequestURI().getRawQuery(), "UTF-8")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.outstanding.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private PhoneBillRestClient client() {
+        return new PhoneBillRestClient("localhost", this.server.getAddress().getPort(), false, MAX_IN_FLIGHT);
+    }
+
+    @Test
+    public void testNoMoreThanMaxInFlightRequestsAreOutstanding() throws Exception {
+        PhoneBillRestClient client = client();
+        List<CompletableFuture<Response>> responses = new ArrayList<>();
+        Thread sender = new Thread(() -> {
+            for (int i = 0; i < 5; ++i)
+                responses.add(client.getPhoneBillsAsync("Customer " + i));
+        });
+        sender.start();
+
+        awaitOutstanding(MAX_IN_FLIGHT);
+        Thread.sleep(200);
+        assertEquals(MAX_IN_FLIGHT, this.outstanding.get());
+        assertTrue("The sender should wait for a request to finish", sender.isAlive());
+
+        this.answer.countDown();
+        sender.join(10000);
+        assertFalse(sender.isAlive());
+        for (int i = 0; i < 5; ++i) {
+            Response response = responses.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(200, response.getCode());
+            assertEquals("customer=Customer " + i, response.getContent().trim());
+        }
+        assertEquals(MAX_IN_FLIGHT, this.mostOutstanding.get());
+        client.close();
+    }
+
+    @Test
+    public void testCloseWaitsForRequestsInFlight() throws Exception {
+        PhoneBillRestClient client = client();
+        CompletableFuture<Response> response = client.getPhoneBillsAsync("Customer");
+        awaitOutstanding(1);
+
+        AtomicBoolean doneWhenClosed = new AtomicBoolean();
+        Thread closer = new Thread(() -> {
+            client.close();
+            doneWhenClosed.set(response.isDone());
+        });
+        closer.start();
+        Thread.sleep(200);
+        assertTrue("Closing should wait for the request in flight", closer.isAlive());
+
+        this.answer.countDown();
+        closer.join(10000);
+        assertFalse(closer.isAlive());
+        assertTrue(doneWhenClosed.get());
+        assertEquals("customer=Customer", response.get().getContent().trim());
+    }
+
+    private void awaitOutstanding(int requests) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (this.outstanding.get() < requests) {
+            assertTrue("Requests never reached the server", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
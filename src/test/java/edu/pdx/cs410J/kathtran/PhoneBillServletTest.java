@@ -0,0 +1,523 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link PhoneBillServlet} class by invoking its request handlers
+ * directly, without a running web server.
+ */
+public class PhoneBillServletTest {
+    private static final int WRITERS = 64;
+    private static final int CALLS_PER_WRITER = 500;
+    private static final int CUSTOMERS = 8;
+    private static final Map<String, Object> ATTRIBUTES = new ConcurrentHashMap<>();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Creates a request whose parameters are the given name/value pairs.
+     */
+    static HttpServletRequest request(String... parameters) {
+        return request(new HashMap<>(), parameters);
+    }
+
+    /**
+     * Creates a request with the given headers whose parameters are the given name/value pairs.
+     */
+    static HttpServletRequest request(Map<String, String> headers, String... parameters) {
+        return request(headers, new byte[0], parameters);
+    }
+
+    /**
+     * Creates a request with the given headers and body whose parameters are the given name/value pairs.
+     */
+    static HttpServletRequest request(Map<String, String> headers, byte[] body, String... parameters) {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        ServletInputStream input = new ServletInputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+        };
+        Map<String, List<String>> values = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2)
+            values.computeIfAbsent(parameters[i], k -> new ArrayList<>()).add(parameters[i + 1]);
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    List<String> value = method.getName().startsWith("getParameter") ? values.get((String) args[0]) : null;
+                    if (method.getName().equals("getParameter"))
+                        return value == null ? null : value.get(0);
+                    if (method.getName().equals("getParameterValues"))
+                        return value == null ? null : value.toArray(new String[value.size()]);
+                    if (method.getName().equals("getHeader"))
+                        return headers.get((String) args[0]);
+                    if (method.getName().equals("getContentType"))
+                        return headers.get("Content-Type");
+                    if (method.getName().equals("getInputStream"))
+                        return input;
+                    return null;
+                });
+    }
+
+    /**
+     * Creates a response that writes its content to the given writer.
+     */
+    static HttpServletResponse response(StringWriter content) {
+        return response(content, new HashMap<>());
+    }
+
+    /**
+     * Creates a response that writes its content to the given writer, and records
+     * its headers, along with its status under the name "status", in the given map.
+     */
+    static HttpServletResponse response(StringWriter content, Map<String, Object> recorded) {
+        return response(content, new ByteArrayOutputStream(), recorded);
+    }
+
+    /**
+     * Creates a response that writes its content to the given writer, or its bytes to the
+     * given stream, and records its headers, along with its status under the name "status",
+     * in the given map.
+     */
+    static HttpServletResponse response(StringWriter content, ByteArrayOutputStream bytes,
+                                        Map<String, Object> recorded) {
+        PrintWriter pw = new PrintWriter(content);
+        ServletOutputStream output = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getWriter"))
+                        return pw;
+                    if (method.getName().equals("getOutputStream"))
+                        return output;
+                    if (method.getName().equals("setStatus"))
+                        recorded.put("status", args[0]);
+                    if (method.getName().equals("setHeader"))
+                        recorded.put((String) args[0], args[1]);
+                    return null;
+                });
+    }
+
+    /**
+     * Creates a servlet configuration whose init parameters are the given name/value pairs.
+     * Every configuration shares the same context attributes, as servlets in one web
+     * application would.
+     */
+    static ServletConfig config(String... initParameters) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < initParameters.length; i += 2)
+            values.put(initParameters[i], initParameters[i + 1]);
+        ServletContext context = (ServletContext) Proxy.newProxyInstance(ServletContext.class.getClassLoader(),
+                new Class<?>[]{ServletContext.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("setAttribute"))
+                        ATTRIBUTES.put((String) args[0], args[1]);
+                    if (method.getName().equals("removeAttribute"))
+                        ATTRIBUTES.remove((String) args[0]);
+                    if (method.getName().equals("getAttribute"))
+                        return ATTRIBUTES.get((String) args[0]);
+                    return null;
+                });
+        return (ServletConfig) Proxy.newProxyInstance(ServletConfig.class.getClassLoader(),
+                new Class<?>[]{ServletConfig.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getInitParameter"))
+                        return values.get((String) args[0]);
+                    if (method.getName().equals("getServletContext"))
+                        return context;
+                    if (method.getName().equals("getServletName"))
+                        return "PhoneBillServlet";
+                    return null;
+                });
+    }
+
+    @Test
+    public void testPostAddsPhoneCall() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        PhoneCall phoneCall = new PhoneCall("503-555-1234", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 10:45 AM");
+        StringWriter content = new StringWriter();
+
+        servlet.doPost(request("customer", "Customer", "phoneCall", phoneCall.toString()), response(content));
+
+        assertTrue(content.toString(), content.toString().contains(Messages.mappedCustomerPhoneBill("Customer", phoneCall)));
+        assertEquals(1, servlet.getPhoneBill("Customer").getPhoneCalls().size());
+    }
+
+    @Test
+    public void testGetWithCurrentETagIsNotModified() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        String phoneCall = new PhoneCall("503-555-1234", "971-555-6789",
+                "6/5/2015 10:30 AM", "6/5/2015 10:45 AM").toString();
+        servlet.doPost(request("customer", "Customer", "phoneCall", phoneCall), response(new StringWriter()));
+
+        Map<String, Object> first = new HashMap<>();
+        StringWriter content = new StringWriter();
+        servlet.doGet(request("customer", "Customer"), response(content, first));
+        assertEquals(HttpServletResponse.SC_OK, first.get("status"));
+        assertTrue(content.toString(), content.toString().contains("No. of Calls on Record: 1"));
+        String eTag = (String) first.get("ETag");
+
+        Map<String, Object> second = new HashMap<>();
+        content = new StringWriter();
+        servlet.doGet(request(Collections.singletonMap("If-None-Match", eTag), "customer", "Customer"),
+                response(content, second));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, second.get("status"));
+        assertEquals("", content.toString());
+
+        servlet.doPost(request("customer", "Customer", "phoneCall", phoneCall), response(new StringWriter()));
+        Map<String, Object> third = new HashMap<>();
+        content = new StringWriter();
+        servlet.doGet(request(Collections.singletonMap("If-None-Match", eTag), "customer", "Customer"),
+                response(content, third));
+        assertEquals(HttpServletResponse.SC_OK, third.get("status"));
+        assertNotEquals(eTag, third.get("ETag"));
+        assertTrue(content.toString(), content.toString().contains("No. of Calls on Record: 2"));
+    }
+
+    @Test
+    public void testListingIsPagedInOrderByCustomer() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        String phoneCall = new PhoneCall("503-555-1234", "971-555-6789",
+                "6/5/2015 10:30 AM", "6/5/2015 10:45 AM").toString();
+        for (String customer : new String[]{"Carol", "Alice", "Dave", "Bob", "Eve"})
+            servlet.doPost(request("customer", customer, "phoneCall", phoneCall), response(new StringWriter()));
+
+        List<String> listed = new ArrayList<>();
+        String after = null;
+        do {
+            StringWriter content = new StringWriter();
+            if (after == null)
+                servlet.doGet(request("limit", "2"), response(content));
+            else
+                servlet.doGet(request("limit", "2", "after", after), response(content));
+            for (String line : content.toString().split("\n")) {
+                if (line.endsWith("'s CS410J Phone Bill"))
+                    listed.add(line.trim().substring(0, line.trim().indexOf('\'')));
+            }
+            assertTrue(content.toString(), content.toString().startsWith(Messages.getMappingCount(
+                    "Dave".equals(after) ? 1 : 2)));
+            after = Messages.getNextPage(content.toString());
+        } while (after != null);
+
+        assertEquals(Arrays.asList("Alice", "Bob", "Carol", "Dave", "Eve"), listed);
+    }
+
+    @Test
+    public void testInvalidLimitIsRejected() throws Exception {
+        Map<String, Object> recorded = new HashMap<>();
+        StringWriter content = new StringWriter();
+        new PhoneBillServlet().doGet(request("limit", "none"), response(content, recorded));
+        assertEquals(HttpServletResponse.SC_PRECONDITION_FAILED, recorded.get("status"));
+        assertTrue(content.toString(), content.toString().contains(Messages.invalidParameter("limit", "none")));
+    }
+
+    @Test
+    public void testEncodedPhoneCallsRoundTrip() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        PhoneCall first = new PhoneCall("503-555-1234", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 10:45 AM");
+        PhoneCall second = new PhoneCall("503-555-4321", "971-555-9876", "6/1/2015 9:30 AM", "6/1/2015 9:45 AM");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        PhoneCallCodec.write(out, "Second", first);
+        PhoneCallCodec.write(out, "First", first);
+        PhoneCallCodec.write(out, "First", second);
+        PhoneCallCodec.writeEnd(out);
+
+        StringWriter content = new StringWriter();
+        servlet.doPost(request(Collections.singletonMap("Content-Type", PhoneCallCodec.CONTENT_TYPE),
+                body.toByteArray()), response(content));
+        assertTrue(content.toString(), content.toString().contains(Messages.mappedPhoneCalls(3, 2)));
+
+        ByteArrayOutputStream got = new ByteArrayOutputStream();
+        Map<String, Object> recorded = new HashMap<>();
+        servlet.doGet(request(Collections.singletonMap("Accept", PhoneCallCodec.CONTENT_TYPE)),
+                response(new StringWriter(), got, recorded));
+        List<String> decoded = new ArrayList<>();
+        assertEquals(3, PhoneCallCodec.read(new ByteArrayInputStream(got.toByteArray()),
+                (customer, phoneCall) -> decoded.add(customer + ": " + phoneCall)));
+        assertEquals(Arrays.asList("First: " + second, "First: " + first, "Second: " + first), decoded);
+    }
+
+    @Test
+    public void testTruncatedEncodedPhoneCallsAddNothing() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        PhoneCallCodec.write(new DataOutputStream(body), "Customer", new PhoneCall("503-555-1234", "971-555-6789",
+                "6/5/2015 10:30 AM", "6/5/2015 10:45 AM"));
+
+        Map<String, Object> recorded = new HashMap<>();
+        servlet.doPost(request(Collections.singletonMap("Content-Type", PhoneCallCodec.CONTENT_TYPE),
+                body.toByteArray()), response(new StringWriter(), recorded));
+        assertEquals(HttpServletResponse.SC_PRECONDITION_FAILED, recorded.get("status"));
+        assertNull(servlet.getPhoneBill("Customer"));
+    }
+
+    @Test
+    public void testInvalidEncodedPhoneCallsAddNothing() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        long start = PhoneCall.getEpochMinutes("6/5/2015 10:30 AM");
+        PhoneCall[][] batches = {
+                {new PhoneCall("503-555-1234", "971-555-6789", start, start + 15),
+                        new PhoneCall("503-555-1234", "971-555-678", start, start + 15)},
+                {new PhoneCall("503-555-1234", "971-555-6789", start, start + 15),
+                        new PhoneCall("503-555-1234", "971-555-6789", start + 15, start)},
+                {new PhoneCall("503-555-1234", "971-555-6789", Long.MIN_VALUE, start)}};
+        for (PhoneCall[] batch : batches) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            for (PhoneCall phoneCall : batch)
+                PhoneCallCodec.write(out, "Customer", phoneCall);
+            PhoneCallCodec.writeEnd(out);
+
+            Map<String, Object> recorded = new HashMap<>();
+            servlet.doPost(request(Collections.singletonMap("Content-Type", PhoneCallCodec.CONTENT_TYPE),
+                    body.toByteArray()), response(new StringWriter(), recorded));
+            assertEquals(HttpServletResponse.SC_PRECONDITION_FAILED, recorded.get("status"));
+            assertNull(servlet.getPhoneBill("Customer"));
+        }
+    }
+
+    @Test
+    public void testPhoneCallLinesAreAddedAndRejectedLinesLocated() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2500; ++i)
+            body.append("Customer, Inc.,503-555-1234,971-555-6789,6/5/2015 10:30 AM,6/5/2015 10:45 am\r\n");
+        body.append("\n");
+        body.append("Customer, Inc.,503-555-1234,971-555-678,6/5/2015 10:30 AM,6/5/2015 10:45 AM\n");
+        body.append("Other,503-555-1234,971-555-6789, 2/30/2015 10:30 AM,6/5/2015 10:45 AM\n");
+        body.append("Other,503-555-1234,6/5/2015 10:30 AM,6/5/2015 10:45 AM\n");
+        body.append("Other,503-555-1234,971-555-6789,6/5/15 11:30 PM,6/6/15 12:15 AM");
+
+        StringWriter content = new StringWriter();
+        servlet.doPost(request(Collections.singletonMap("Content-Type", PhoneCallLines.CONTENT_TYPE),
+                body.toString().getBytes(StandardCharsets.UTF_8)), response(content));
+        String[] lines = content.toString().split("\n");
+        assertEquals(Messages.addedPhoneCallLines(2501, 2505, 3), lines[0].trim());
+        assertEquals(Messages.rejectedLine(2502, 29, "callee"), lines[1].trim());
+        assertEquals(Messages.rejectedLine(2503, 34, "start time"), lines[2].trim());
+        assertEquals(Messages.rejectedLine(2504, 55, "number of fields"), lines[3].trim());
+
+        assertEquals(2500, servlet.getPhoneBill("Customer, Inc.").getPhoneCallCount());
+        assertEquals(45, servlet.getPhoneBill("Other").getTotalMinutes());
+    }
+
+    @Test
+    public void testCustomersAreSpreadAcrossConfiguredShards() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        servlet.init(config("shards", "3"));
+        PhoneCall phoneCall = new PhoneCall("503-555-1234", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 10:45 AM");
+        for (int i = 0; i < 30; ++i)
+            servlet.doPost(request("customer", "Customer " + i, "phoneCall", phoneCall.toString()),
+                    response(new StringWriter()));
+        servlet.destroy();
+
+        for (int i = 0; i < 30; ++i)
+            assertEquals(1, servlet.getPhoneBill("Customer " + i).getPhoneCallCount());
+        StringWriter content = new StringWriter();
+        servlet.doGet(request(), response(content));
+        assertTrue(content.toString().startsWith(Messages.getMappingCount(30)));
+    }
+
+    @Test(expected = ServletException.class)
+    public void testShardCountMustBePositive() throws Exception {
+        new PhoneBillServlet().init(config("shards", "0"));
+    }
+
+    @Test
+    public void testSnapshotIntervalMustBePositive() throws Exception {
+        for (String interval : new String[]{"0", "-5", "five"}) {
+            try {
+                new PhoneBillServlet().init(config("snapshotInterval", interval));
+                fail("A snapshot interval of " + interval + " should not be accepted");
+            } catch (ServletException ex) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testMetricsCountRequestsByOperation() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        servlet.init(config());
+        String phoneCall = new PhoneCall("503-555-1234", "971-555-6789",
+                "6/5/2015 10:30 AM", "6/5/2015 10:45 AM").toString();
+        servlet.doPost(request("customer", "First", "phoneCall", phoneCall,
+                "customer", "Second", "phoneCall", phoneCall), response(new StringWriter()));
+        servlet.doGet(request("customer", "First"), response(new StringWriter()));
+        servlet.doGet(request("customer", "First"), response(new StringWriter()));
+        servlet.doGet(request(), response(new StringWriter()));
+
+        PhoneBillMetricsServlet metricsServlet = new PhoneBillMetricsServlet();
+        metricsServlet.init(config());
+        StringWriter content = new StringWriter();
+        metricsServlet.doGet(request(), response(content));
+        servlet.destroy();
+
+        String metrics = content.toString();
+        assertTrue(metrics, metrics.contains("phonebill_customers 2"));
+        assertTrue(metrics, metrics.contains("phonebill_phone_calls 2"));
+        assertTrue(metrics, metrics.contains("phonebill_requests{operation=\"add\"} 1"));
+        assertTrue(metrics, metrics.contains("phonebill_requests{operation=\"read\"} 2"));
+        assertTrue(metrics, metrics.contains("phonebill_requests{operation=\"search\"} 0"));
+        assertTrue(metrics, metrics.contains("phonebill_requests{operation=\"list\"} 1"));
+    }
+
+    @Test
+    public void testFindCallsInvolvingPhoneNumber() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        servlet.doPost(request("customer", "First", "phoneCall", new PhoneCall("503-555-1234", "971-555-6789",
+                "6/5/2015 10:30 AM", "6/5/2015 10:45 AM").toString()), response(new StringWriter()));
+        servlet.doPost(request("customer", "Second", "phoneCall", new PhoneCall("971-555-0000", "503-555-1234",
+                "6/6/2015 10:30 AM", "6/6/2015 10:45 AM").toString()), response(new StringWriter()));
+        servlet.doPost(request("customer", "Third", "phoneCall", new PhoneCall("971-555-0000", "971-555-6789",
+                "6/7/2015 10:30 AM", "6/7/2015 10:45 AM").toString()), response(new StringWriter()));
+
+        StringWriter content = new StringWriter();
+        servlet.doGet(request("phoneNumber", "503-555-1234"), response(content));
+        String found = content.toString();
+        assertTrue(found, found.contains(Messages.searchPhoneNumberForCalls("503-555-1234")));
+        assertTrue(found, found.contains("First:"));
+        assertTrue(found, found.contains("Second:"));
+        assertFalse(found, found.contains("Third:"));
+
+        content = new StringWriter();
+        servlet.doGet(request("phoneNumber", "800-555-0000"), response(content));
+        assertTrue(content.toString(), content.toString().contains(Messages.noCallsInvolving("800-555-0000")));
+    }
+
+    @Test
+    public void testGetForUnknownCustomer() throws Exception {
+        StringWriter content = new StringWriter();
+        new PhoneBillServlet().doGet(request("customer", "Nobody"), response(content));
+        assertTrue(content.toString(), content.toString().contains(Messages.formatCustomerPhoneBillPair("Nobody", null)));
+    }
+
+    @Test
+    public void testBatchPostAddsPhoneCallsForManyCustomers() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        String phoneCall = new PhoneCall("503-555-1234", "971-555-6789",
+                "6/5/2015 10:30 AM", "6/5/2015 10:45 AM").toString();
+        StringWriter content = new StringWriter();
+
+        servlet.doPost(request("customer", "First", "phoneCall", phoneCall,
+                "customer", "Second", "phoneCall", phoneCall,
+                "customer", "First", "phoneCall", phoneCall), response(content));
+
+        assertTrue(content.toString(), content.toString().contains(Messages.mappedPhoneCalls(3, 2)));
+        assertEquals(2, servlet.getPhoneBill("First").getPhoneCalls().size());
+        assertEquals(1, servlet.getPhoneBill("Second").getPhoneCalls().size());
+    }
+
+    @Test
+    public void testBatchPostWithMismatchedCustomersAddsNothing() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        String phoneCall = new PhoneCall("503-555-1234", "971-555-6789",
+                "6/5/2015 10:30 AM", "6/5/2015 10:45 AM").toString();
+        StringWriter content = new StringWriter();
+
+        servlet.doPost(request("customer", "First", "customer", "Second",
+                "phoneCall", phoneCall, "phoneCall", phoneCall, "phoneCall", phoneCall), response(content));
+
+        assertTrue(content.toString(), content.toString().contains(Messages.mismatchedParameters("customer", "phoneCall")));
+        assertNull(servlet.getPhoneBill("First"));
+    }
+
+    @Test
+    public void testRestartRestoresPhoneCallsFromSnapshotAndJournal() throws Exception {
+        File journal = folder.newFile();
+        ServletConfig config = config("journal", journal.getPath(),
+                "snapshot", new File(folder.getRoot(), "calls.snapshot").getPath());
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        servlet.init(config);
+        for (int day = 1; day <= 4; ++day) {
+            String phoneCall = new PhoneCall("503-555-1234", "971-555-6789",
+                    "6/" + day + "/2015 10:30 AM", "6/" + day + "/2015 10:45 AM").toString();
+            servlet.doPost(request("customer", day == 3 ? "Other" : "Customer", "phoneCall", phoneCall),
+                    response(new StringWriter()));
+            if (day == 2) {
+                long journalLength = journal.length();
+                servlet.writeSnapshot();
+                assertTrue(journal.length() < journalLength);
+            }
+        }
+        servlet.getPhoneBill("Customer").sortPhoneCalls();
+        String before = servlet.getPhoneBill("Customer").prettyPrint();
+
+        PhoneBillServlet restarted = new PhoneBillServlet();
+        restarted.init(config);
+        assertEquals(before, restarted.getPhoneBill("Customer").prettyPrint());
+        assertEquals(3, restarted.getPhoneBill("Customer").getPhoneCallCount());
+        assertEquals(1, restarted.getPhoneBill("Other").getPhoneCallCount());
+        restarted.destroy();
+    }
+
+    @Test
+    public void testConcurrentPostsLoseNoPhoneCalls() throws Exception {
+        PhoneBillServlet servlet = new PhoneBillServlet();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+
+        for (int writer = 0; writer < WRITERS; ++writer) {
+            String customer = "Customer " + (writer % CUSTOMERS);
+            String caller = String.format("503-555-%04d", writer);
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < CALLS_PER_WRITER; ++i) {
+                    PhoneCall phoneCall = new PhoneCall(caller, "971-555-6789",
+                            "6/5/2015 10:30 AM", "6/5/2015 10:45 AM");
+                    StringWriter content = new StringWriter();
+                    servlet.doPost(request("customer", customer, "phoneCall", phoneCall.toString()), response(content));
+                    assertTrue(content.toString(), content.toString().contains(caller));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers)
+            writer.get();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (int customer = 0; customer < CUSTOMERS; ++customer) {
+            PhoneBill phoneBill = servlet.getPhoneBill("Customer " + customer);
+            assertEquals(WRITERS / CUSTOMERS * CALLS_PER_WRITER, phoneBill.getPhoneCalls().size());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link PhoneBillSnapshot} class.
+ */
+public class PhoneBillSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadReturnsWrittenPhoneBills() throws Exception {
+        PhoneBill first = new PhoneBill("First");
+        first.addPhoneCall(new PhoneCall("503-555-1234", "971-555-6789", "6/7/2015 10:30 AM", "6/7/2015 10:45 AM"));
+        first.addPhoneCall(new PhoneCall("503-555-1234", "971-555-0000", "6/5/2015 10:30 AM", "6/5/2015 11:45 AM"));
+        PhoneBill second = new PhoneBill("S\u00ebcond");
+        second.addPhoneCall(new PhoneCall("503-555-4321", "971-555-6789", "6/6/2015 10:30 PM", "6/7/2015 1:45 AM"));
+
+        File file = new File(folder.getRoot(), "calls.snapshot");
+        assertEquals(3, PhoneBillSnapshot.write(file, 42, Arrays.asList(first, second)));
+
+        Map<String, List<PhoneCall>> read = new HashMap<>();
+        assertEquals(3, PhoneBillSnapshot.read(file, read::put));
+        assertEquals(42, PhoneBillSnapshot.readJournalPosition(file));
+        assertEquals(2, read.size());
+        assertEquals(first.prettyPrint(), bill("First", read.get("First")).prettyPrint());
+        assertEquals(second.prettyPrint(), bill("S\u00ebcond", read.get("S\u00ebcond")).prettyPrint());
+    }
+
+    @Test
+    public void testTooLongNameKeepsPreviousSnapshot() throws Exception {
+        File file = new File(folder.getRoot(), "calls.snapshot");
+        PhoneBill first = new PhoneBill("First");
+        first.addPhoneCall(new PhoneCall("503-555-1234", "971-555-6789", "6/7/2015 10:30 AM", "6/7/2015 10:45 AM"));
+        PhoneBillSnapshot.write(file, 0, Arrays.asList(first));
+
+        char[] name = new char[70000];
+        Arrays.fill(name, 'x');
+        try {
+            PhoneBillSnapshot.write(file, 0, Arrays.asList(first, new PhoneBill(new String(name))));
+            fail("A name too long for a snapshot should not be written");
+        } catch (IOException ex) {
+            // Expected
+        }
+        Map<String, List<PhoneCall>> read = new HashMap<>();
+        assertEquals(1, PhoneBillSnapshot.read(file, read::put));
+        assertEquals(Arrays.asList("calls.snapshot"), Arrays.asList(folder.getRoot().list()));
+    }
+
+    @Test
+    public void testReadWithoutSnapshotReadsNothing() throws Exception {
+        assertEquals(0, PhoneBillSnapshot.read(new File(folder.getRoot(), "missing"), (customer, calls) -> fail()));
+        assertEquals(0, PhoneBillSnapshot.readJournalPosition(new File(folder.getRoot(), "missing")));
+    }
+
+    private static PhoneBill bill(String customer, List<PhoneCall> phoneCalls) {
+        PhoneBill phoneBill = new PhoneBill(customer);
+        phoneBill.addPhoneCalls(phoneCalls);
+        return phoneBill;
+    }
+}
@@ -0,0 +1,195 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link PhoneBill} class.
+ */
+public class PhoneBillTest {
+
+    private static PhoneCall call(String startTime, String endTime) {
+        return new PhoneCall("503-555-1234", "971-555-6789", startTime, endTime);
+    }
+
+    @Test
+    public void testGetPhoneCallsBetween() {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        phoneBill.addPhoneCall(call("6/7/2015 10:30 AM", "6/7/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/1/2015 10:30 AM", "6/1/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/5/2015 10:30 AM", "6/5/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/5/2015 10:30 AM", "6/5/2015 11:45 AM"));
+
+        List<PhoneCall> found = phoneBill.getPhoneCallsBetween(
+                PhoneCall.getEpochMinutes("6/5/2015 10:30 AM"), PhoneCall.getEpochMinutes("6/7/2015 10:30 AM"));
+        assertEquals(3, found.size());
+        assertEquals(PhoneCall.getEpochMinutes("6/7/2015 10:30 AM"), found.get(2).getStartMinutes());
+
+        assertTrue(phoneBill.getPhoneCallsBetween(
+                PhoneCall.getEpochMinutes("6/8/2015 10:30 AM"), PhoneCall.getEpochMinutes("6/9/2015 10:30 AM")).isEmpty());
+        assertTrue(phoneBill.getPhoneCallsBetween(
+                PhoneCall.getEpochMinutes("6/7/2015 10:30 AM"), PhoneCall.getEpochMinutes("6/1/2015 10:30 AM")).isEmpty());
+    }
+
+    @Test
+    public void testPhoneCallsAreSortedAfterOutOfOrderAdd() {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        phoneBill.addPhoneCall(call("6/1/2015 10:30 AM", "6/1/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/7/2015 10:30 AM", "6/7/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/5/2015 10:30 AM", "6/5/2015 10:45 AM"));
+        phoneBill.sortPhoneCalls();
+
+        long previous = Long.MIN_VALUE;
+        for (Object phoneCall : phoneBill.getPhoneCalls()) {
+            assertTrue(((PhoneCall) phoneCall).getStartMinutes() >= previous);
+            previous = ((PhoneCall) phoneCall).getStartMinutes();
+        }
+        assertEquals(PhoneCall.getEpochMinutes("6/7/2015 10:30 AM"),
+                ((PhoneCall) phoneBill.getMostRecentPhoneCall()).getStartMinutes());
+    }
+
+    @Test
+    public void testPagesCoverEveryPhoneCallOnce() throws Exception {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        phoneBill.addPhoneCall(call("6/5/2015 10:30 AM", "6/5/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/1/2015 10:30 AM", "6/1/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/5/2015 10:30 AM", "6/5/2015 11:45 AM"));
+        phoneBill.addPhoneCall(call("6/7/2015 10:30 AM", "6/7/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/5/2015 10:30 AM", "6/5/2015 12:45 PM"));
+
+        StringBuilder pages = new StringBuilder();
+        String after = phoneBill.prettyPrint(new StringBuilder(), null, 2);
+        assertNotNull(after);
+        phoneBill.addPhoneCall(call("5/1/2015 10:30 AM", "5/1/2015 10:45 AM"));
+        after = phoneBill.prettyPrint(pages, after, 2);
+        assertNotNull(after);
+        assertNull(phoneBill.prettyPrint(pages, after, 2));
+
+        String text = pages.toString();
+        assertTrue(text, text.contains("11:45 AM"));
+        assertTrue(text, text.contains("12:45 PM"));
+        assertTrue(text, text.contains("6/7/15"));
+        assertFalse(text, text.contains("5/1/15"));
+    }
+
+    @Test
+    public void testPagesDoNotRepeatCallsAddedBeforeTheCursor() throws Exception {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        phoneBill.addPhoneCall(new PhoneCall("503-555-5000", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 10:45 AM"));
+        phoneBill.addPhoneCall(new PhoneCall("503-555-6000", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 10:50 AM"));
+        phoneBill.addPhoneCall(new PhoneCall("503-555-6000", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 10:55 AM"));
+        phoneBill.addPhoneCall(new PhoneCall("503-555-7000", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 11:00 AM"));
+
+        StringBuilder first = new StringBuilder();
+        String after = phoneBill.prettyPrint(first, null, 2);
+        phoneBill.addPhoneCall(new PhoneCall("503-555-1000", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 11:05 AM"));
+        phoneBill.addPhoneCall(new PhoneCall("503-555-6000", "971-555-6789", "6/5/2015 10:30 AM", "6/5/2015 11:10 AM"));
+        StringBuilder rest = new StringBuilder();
+        assertNull(phoneBill.prettyPrint(rest, after, 10));
+
+        String text = rest.toString();
+        assertFalse(text, text.contains("10:45 AM"));
+        assertFalse(text, text.contains("10:50 AM"));
+        assertFalse(text, text.contains("11:05 AM"));
+        assertTrue(text, text.contains("10:55 AM"));
+        assertTrue(text, text.contains("11:00 AM"));
+        assertTrue(text, text.contains("11:10 AM"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPagesMustHoldACallRecord() throws Exception {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        phoneBill.addPhoneCall(call("6/5/2015 10:30 AM", "6/5/2015 10:45 AM"));
+        phoneBill.prettyPrint(new StringBuilder(), null, 0);
+    }
+
+    @Test
+    public void testUsageIsKeptAsPhoneCallsAreAdded() {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        assertEquals(0, phoneBill.getLongestCallMinutes());
+        phoneBill.addPhoneCall(call("6/5/2015 10:30 AM", "6/5/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/1/2015 10:30 AM", "6/1/2015 11:45 AM"));
+        phoneBill.addPhoneCall(new PhoneCall("503-555-1234", "503-555-0000", "6/2/2015 11:50 PM", "6/3/2015 12:10 AM"));
+
+        assertEquals(15 + 75 + 20, phoneBill.getTotalMinutes());
+        assertEquals(75, phoneBill.getLongestCallMinutes());
+        assertEquals(Integer.valueOf(2), phoneBill.getCallsPerCallee().get("971-555-6789"));
+        assertEquals(Integer.valueOf(1), phoneBill.getCallsPerCallee().get("503-555-0000"));
+        assertEquals("503-555-0000", phoneBill.getCallsPerCallee().firstKey());
+    }
+
+    @Test
+    public void testUsageIsReadWhilePhoneBillIsLocked() throws Exception {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        phoneBill.addPhoneCall(call("6/1/2015 10:30 AM", "6/1/2015 10:45 AM"));
+        String[] usage = new String[1];
+        Thread reader = new Thread(() -> usage[0] = Messages.formatUsage("Customer", phoneBill));
+        synchronized (phoneBill) {
+            reader.start();
+            reader.join(10000);
+        }
+        assertNotNull("Reading usage waited on the phone bill's lock", usage[0]);
+        assertTrue(usage[0], usage[0].contains("971-555-6789\t1"));
+    }
+
+    @Test
+    public void testSnapshotIsUnchangedByLaterPhoneCalls() {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        phoneBill.addPhoneCall(call("6/7/2015 10:30 AM", "6/7/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/1/2015 10:30 AM", "6/1/2015 10:45 AM"));
+        PhoneBill snapshot = phoneBill.getSnapshot();
+        String printed = snapshot.prettyPrint();
+
+        phoneBill.addPhoneCall(call("5/1/2015 10:30 AM", "5/1/2015 10:45 AM"));
+        phoneBill.addPhoneCall(call("6/9/2015 10:30 AM", "6/9/2015 11:45 AM"));
+        assertEquals(printed, snapshot.prettyPrint());
+        assertEquals(2, snapshot.getPhoneCallCount());
+        assertEquals(30, snapshot.getTotalMinutes());
+        assertEquals(Integer.valueOf(2), snapshot.getCallsPerCallee().get("971-555-6789"));
+        assertEquals(4, phoneBill.getPhoneCallCount());
+        assertEquals(PhoneCall.getEpochMinutes("5/1/2015 10:30 AM"),
+                ((PhoneCall) phoneBill.getSnapshot().getPhoneCalls().iterator().next()).getStartMinutes());
+
+        try {
+            snapshot.addPhoneCall(call("6/2/2015 10:30 AM", "6/2/2015 10:45 AM"));
+            fail("A snapshot should not be added to");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testReadsSeeWholeBatchesInOrderWhileCallsAreAdded() throws Exception {
+        PhoneBill phoneBill = new PhoneBill("Customer");
+        Thread writer = new Thread(() -> {
+            for (int batch = 0; batch < 500; ++batch) {
+                List<PhoneCall> calls = new ArrayList<>();
+                for (int i = 0; i < 10; ++i) {
+                    long start = (i % 2 == 0 ? batch : 1000 - batch) * 60L;
+                    calls.add(new PhoneCall("503-555-1234", "971-555-6789", start, start + 1));
+                }
+                phoneBill.addPhoneCalls(calls);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            PhoneBill snapshot = phoneBill.getSnapshot();
+            Collection phoneCalls = snapshot.getPhoneCalls();
+            assertEquals(0, phoneCalls.size() % 10);
+            assertEquals(phoneCalls.size(), snapshot.getVersion());
+            assertEquals(phoneCalls.size(), snapshot.getTotalMinutes());
+            long previous = Long.MIN_VALUE;
+            for (Object phoneCall : phoneCalls) {
+                assertTrue(((PhoneCall) phoneCall).getStartMinutes() >= previous);
+                previous = ((PhoneCall) phoneCall).getStartMinutes();
+            }
+        }
+        writer.join();
+        assertEquals(5000, phoneBill.getSnapshot().getPhoneCalls().size());
+    }
+}
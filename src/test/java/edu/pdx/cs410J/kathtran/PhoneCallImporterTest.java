@@ -0,0 +1,31 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the line checking of the {@link PhoneCallImporter} class, which needs no server.
+ */
+public class PhoneCallImporterTest {
+
+    private final PhoneCallImporter importer = new PhoneCallImporter(new PhoneBillRestClient("localhost", 8080), 10);
+
+    @Test
+    public void testValidLinesAreBatched() {
+        assertTrue(importer.parseLine("kathleen tran,503-555-0123,971-555-0199,6/5/2015 10:30 am,6/5/2015 11:02 am"));
+        assertTrue(importer.parseLine(" Vy , 503-555-0123 , 971-555-0199 , 06/05/2015  1:30 PM , 06/05/2015 2:00 PM "));
+        assertEquals(2, importer.getBatchedPhoneCallCount());
+    }
+
+    @Test
+    public void testInvalidLinesAreRejected() {
+        assertFalse(importer.parseLine("kathleen tran,503-555-0123,971-555-0199,6/5/2015 10:30 am"));
+        assertFalse(importer.parseLine(",503-555-0123,971-555-0199,6/5/2015 10:30 am,6/5/2015 11:02 am"));
+        assertFalse(importer.parseLine("kathleen tran,503-555-012,971-555-0199,6/5/2015 10:30 am,6/5/2015 11:02 am"));
+        assertFalse(importer.parseLine("kathleen tran,503-555-0123,971-555-0199,2/30/2015 10:30 am,6/5/2015 11:02 am"));
+        assertFalse(importer.parseLine("kathleen tran,503-555-0123,971-555-0199,6/5/2015 13:30 am,6/5/2015 11:02 am"));
+        assertFalse(importer.parseLine("kathleen tran,503-555-0123,971-555-0199,6/5/2015 10:30,6/5/2015 11:02 am"));
+        assertEquals(0, importer.getBatchedPhoneCallCount());
+    }
+}
@@ -0,0 +1,95 @@
+package edu.pdx.cs410J.kathtran;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link PhoneCallParser} class.
+ */
+public class PhoneCallParserTest {
+
+    @Test
+    public void testParsePhoneNumber() {
+        assertEquals(5035550123L, PhoneCallParser.parsePhoneNumber("503-555-0123"));
+        assertEquals(0, PhoneCallParser.parsePhoneNumber("000-000-0000"));
+        assertEquals(5550123L, PhoneCallParser.parsePhoneNumber("to 000-555-0123 from", 3, 15));
+        assertEquals(-1, PhoneCallParser.parsePhoneNumber("503-555-012"));
+        assertEquals(-1, PhoneCallParser.parsePhoneNumber("503-555-01234"));
+        assertEquals(-1, PhoneCallParser.parsePhoneNumber("503 555 0123"));
+        assertEquals(-1, PhoneCallParser.parsePhoneNumber("503-5a5-0123"));
+        assertEquals(-1, PhoneCallParser.parsePhoneNumber(null));
+    }
+
+    @Test
+    public void testDateTimesAgreeWithSimpleDateFormat() throws Exception {
+        assertEquals(new SimpleDateFormat("MM/dd/yyyy hh:mm a", Locale.US).parse("03/08/2015 02:30 AM").getTime() / 60000,
+                PhoneCallParser.parseDateTime("3/8/2015 2:30 AM"));
+        SimpleDateFormat format = new SimpleDateFormat("M/d/yyyy h:mm a", Locale.US);
+        SimpleDateFormat shortYear = new SimpleDateFormat("MM/dd/yy hh:mm a", Locale.US);
+        for (long millis = 0; millis < 2000000000000L; millis += 9876543210L / 7) {
+            Date date = new Date(millis / 60000 * 60000);
+            String text = format.format(date);
+            assertEquals(text, format.parse(text).getTime() / 60000, PhoneCallParser.parseDateTime(text));
+            String shortText = shortYear.format(date);
+            assertEquals(shortText, shortYear.parse(shortText).getTime() / 60000,
+                    PhoneCallParser.parseDateTime(shortText));
+        }
+        assertEquals(PhoneCallParser.parseDateTime("06/05/2015 10:30 PM"),
+                PhoneCallParser.parseDateTime("6/5/15 10:30 pm"));
+        assertEquals(PhoneCallParser.parseDateTime("1/1/2016 12:00 AM") - 1,
+                PhoneCallParser.parseDateTime("12/31/2015 11:59 PM"));
+    }
+
+    @Test
+    public void testInvalidDateTimesAreRejected() {
+        for (String text : new String[]{"", "6/5/2015", "6/5/2015 10:30", "2/29/2015 10:30 AM", "2/30/2016 10:30 AM",
+                "13/5/2015 10:30 AM", "0/5/2015 10:30 AM", "6/0/2015 10:30 AM", "6/5/201 10:30 AM",
+                "6/5/20155 10:30 AM", "6/5/2015 13:30 AM", "6/5/2015 0:30 AM", "6/5/2015 10:60 AM",
+                "6/5/2015 10:3 AM", "6/5/2015 10:30 XM", "6/5/2015 10:30 AMX", "6/5/2015  10:30 AM", "a/5/2015 10:30 AM"})
+            assertEquals(text, PhoneCallParser.INVALID, PhoneCallParser.parseDateTime(text));
+        assertNotEquals(PhoneCallParser.INVALID, PhoneCallParser.parseDateTime("2/29/2016 10:30 AM"));
+        assertEquals(-1, PhoneCallParser.parseClock("0:30", 0, 4));
+        assertEquals(12 * 60 + 59, PhoneCallParser.parseClock("12:59", 0, 5));
+    }
+
+    @Test
+    public void testParsePhoneCall() {
+        PhoneCall call = new PhoneCall("503-555-0123", "971-555-0199", "6/5/2015 10:30 PM", "6/5/2015 11:02 PM");
+        PhoneCall parsed = PhoneCall.parse(call.toString());
+        assertEquals(call.getCaller(), parsed.getCaller());
+        assertEquals(call.getCallee(), parsed.getCallee());
+        assertEquals(call.getStartMinutes(), parsed.getStartMinutes());
+        assertEquals(32, parsed.getCallDuration());
+        assertNull(PhoneCall.parse("Phone call from 503-555-0123 to 971-555-0199 from 6/5/15 10:30 PM"));
+        assertNull(PhoneCall.parse("Phone call from 503-555-012 to 971-555-0199 from 6/5/15 10:30 PM to 6/5/15 11:02 PM"));
+        assertNull(PhoneCall.parse("Phone call from 503-555-0123 to 971-555-0199 from 6/5/15 10:30 PM to 6/31/15 11:02 PM"));
+    }
+
+    @Test
+    public void testShortFormsOfNewerJdksAreAccepted() {
+        long expected = PhoneCallParser.parseDateTime("10/17/26 9:36 PM");
+        assertNotEquals(PhoneCallParser.INVALID, expected);
+        assertEquals(expected, PhoneCallParser.parseDateTime("10/17/26, 9:36 PM"));
+        assertEquals(expected, PhoneCallParser.parseDateTime("10/17/26, 9:36\u202FPM"));
+        assertEquals(expected, PhoneCallParser.parseDateTime("10/17/26 9:36\u00A0PM"));
+        assertEquals(PhoneCallParser.INVALID, PhoneCallParser.parseDateTime("10/17/26,, 9:36 PM"));
+    }
+
+    @Test
+    public void testTextOfPhoneCallsRoundTripsUnderDefaultLocale() {
+        for (String[] times : new String[][]{{"6/5/2015 9:05 AM", "6/5/2015 12:00 PM"},
+                {"12/31/2015 11:59 PM", "1/1/2016 12:01 AM"}, {"10/17/2026 9:36 PM", "10/17/2026 10:00 PM"}}) {
+            PhoneCall call = new PhoneCall("503-555-0123", "971-555-0199", times[0], times[1]);
+            PhoneCall parsed = PhoneCall.parse(call.toString());
+            assertNotNull(call.toString(), parsed);
+            assertEquals(call.toString(), parsed.toString());
+            assertEquals(call.getStartMinutes(), parsed.getStartMinutes());
+            assertEquals(call.getEndMinutes(), parsed.getEndMinutes());
+        }
+    }
+}